@@ -0,0 +1,87 @@
+package com.plagiarism.benchmark;
+
+import com.plagiarism.util.PlagiarismDetectionEngine;
+import com.plagiarism.util.TextFingerprint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link PlagiarismDetectionEngine} on reproducible synthetic essays.
+ * Run with {@code -prof gc} to see the allocation rate per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DetectionEngineBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int peers;
+
+    @Param({"1500"})
+    private int words;
+
+    private PlagiarismDetectionEngine engine;
+    private String submission;
+    private String closestPeer;
+    private List<String> peerTexts;
+    private TextFingerprint submissionFingerprint;
+    private List<TextFingerprint> peerFingerprints;
+
+    @Setup
+    public void setUp() {
+        engine = new PlagiarismDetectionEngine();
+        submission = SyntheticCorpus.essay(1, words);
+
+        // Every fifth peer is a paraphrase of the submission, the rest are unrelated essays
+        peerTexts = new ArrayList<>(peers);
+        for (int i = 0; i < peers; i++) {
+            peerTexts.add(i % 5 == 0
+                    ? SyntheticCorpus.paraphrase(submission, 100 + i, 0.15)
+                    : SyntheticCorpus.essay(100 + i, words));
+        }
+        closestPeer = peerTexts.get(0);
+
+        submissionFingerprint = engine.createFingerprint(submission);
+        peerFingerprints = new ArrayList<>(peers);
+        for (String peerText : peerTexts) {
+            peerFingerprints.add(engine.createFingerprint(peerText));
+        }
+    }
+
+    @Benchmark
+    public double calculateSimilarityText() {
+        return engine.calculateSimilarity(submission, closestPeer);
+    }
+
+    @Benchmark
+    public double calculateSimilarityFingerprint() {
+        return engine.calculateSimilarity(submissionFingerprint, peerFingerprints.get(0));
+    }
+
+    @Benchmark
+    public TextFingerprint createFingerprint() {
+        return engine.createFingerprint(submission);
+    }
+
+    @Benchmark
+    public Map<String, Object> calculateDetailedSimilarityText() {
+        return engine.calculateDetailedSimilarity(submission, peerTexts);
+    }
+
+    @Benchmark
+    public Map<String, Object> calculateDetailedSimilarityFingerprint() {
+        return engine.calculateDetailedSimilarity(submissionFingerprint, peerFingerprints);
+    }
+
+    @Benchmark
+    public String highlightSimilarSections() {
+        return engine.highlightSimilarSections(submission, closestPeer);
+    }
+}
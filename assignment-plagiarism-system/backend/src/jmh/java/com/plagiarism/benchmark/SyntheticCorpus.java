@@ -0,0 +1,65 @@
+package com.plagiarism.benchmark;
+
+import java.util.Random;
+
+/**
+ * Reproducible synthetic essays for benchmarks. The same seed always yields the same text.
+ */
+public final class SyntheticCorpus {
+
+    private static final String[] VOCABULARY = buildVocabulary(5000);
+    private static final String[] PUNCTUATION = {",", ".", ";", ":", "!", "?", "'s", "-"};
+
+    private SyntheticCorpus() {
+    }
+
+    /**
+     * Generate an essay of roughly {@code words} words with mixed case, punctuation and line breaks
+     */
+    public static String essay(long seed, int words) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            String word = VOCABULARY[(int) Math.min(VOCABULARY.length - 1,
+                    Math.abs(random.nextGaussian()) * VOCABULARY.length / 4)];
+            if (i % 12 == 0) {
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                text.append(word);
+            }
+            if (random.nextInt(8) == 0) {
+                text.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+            }
+            text.append(i % 15 == 14 ? "\n" : " ");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Copy of an essay with a fraction of its words replaced, simulating a paraphrased submission
+     */
+    public static String paraphrase(String essay, long seed, double changedFraction) {
+        Random random = new Random(seed);
+        String[] words = essay.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            if (random.nextDouble() < changedFraction) {
+                words[i] = VOCABULARY[random.nextInt(VOCABULARY.length)];
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    private static String[] buildVocabulary(int size) {
+        Random random = new Random(42);
+        String[] vocabulary = new String[size];
+        for (int i = 0; i < size; i++) {
+            int length = 2 + random.nextInt(9);
+            StringBuilder word = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+        return vocabulary;
+    }
+}
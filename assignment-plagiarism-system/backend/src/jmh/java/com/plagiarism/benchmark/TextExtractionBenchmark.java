@@ -0,0 +1,86 @@
+package com.plagiarism.benchmark;
+
+import com.plagiarism.util.FileTextExtractor;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of {@link FileTextExtractor#extractTextFromFile} on generated PDFs of several sizes.
+ * Run with {@code -prof gc} to see how allocation grows with the page count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextExtractionBenchmark {
+
+    private static final int LINES_PER_PAGE = 45;
+    private static final int WORDS_PER_LINE = 12;
+
+    @Param({"1", "20", "200"})
+    private int pages;
+
+    private FileTextExtractor extractor;
+    private Path directory;
+    private String pdfPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        extractor = new FileTextExtractor();
+        directory = Files.createTempDirectory("extraction-benchmark");
+        pdfPath = writePdf(directory.resolve("essay-" + pages + ".pdf"), pages).toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public String extractPdf() {
+        return extractor.extractTextFromFile(pdfPath);
+    }
+
+    private static Path writePdf(Path path, int pages) throws IOException {
+        String[] words = SyntheticCorpus.essay(pages, pages * LINES_PER_PAGE * WORDS_PER_LINE)
+                .split("\\s+");
+        try (PDDocument document = new PDDocument()) {
+            int word = 0;
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 740);
+                    for (int line = 0; line < LINES_PER_PAGE && word < words.length; line++) {
+                        StringBuilder text = new StringBuilder();
+                        for (int w = 0; w < WORDS_PER_LINE && word < words.length; w++) {
+                            text.append(words[word++]).append(' ');
+                        }
+                        content.showText(text.toString());
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(path.toFile());
+        }
+        return path;
+    }
+}
@@ -0,0 +1,74 @@
+package com.plagiarism.benchmark;
+
+import com.plagiarism.util.TextTokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to serve a burst of concurrent uploads that mostly wait on I/O, on a bounded
+ * platform pool sized like Tomcat's default worker pool versus one virtual thread per
+ * upload. Each upload blocks for {@code blockingMillis} (standing in for MySQL, the file
+ * system and PDFBox) around a little tokenizing work. The virtual variant needs a
+ * Java 21 runtime; the executor is created reflectively so this compiles on Java 17.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadingBenchmark {
+
+    // Tomcat's default server.tomcat.threads.max
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"1000"})
+    private int concurrentUploads;
+
+    @Param({"5"})
+    private int blockingMillis;
+
+    private ExecutorService executor;
+    private String text;
+    private TextTokenizer tokenizer;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        executor = "virtual".equals(threads)
+                ? (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null)
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        text = SyntheticCorpus.essay(11, 500);
+        tokenizer = new TextTokenizer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long uploadBurst() throws Exception {
+        List<Future<Integer>> uploads = new ArrayList<>(concurrentUploads);
+        for (int i = 0; i < concurrentUploads; i++) {
+            uploads.add(executor.submit(() -> {
+                Thread.sleep(blockingMillis);
+                return tokenizer.hashTokens(text).length;
+            }));
+        }
+
+        long tokens = 0;
+        for (Future<Integer> upload : uploads) {
+            tokens += upload.get();
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,63 @@
+package com.plagiarism.benchmark;
+
+import com.plagiarism.util.TextTokenizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-pass {@link TextTokenizer} with the regex normalization
+ * pipeline it replaced (lower-case, two replaceAll passes, trim, then a split
+ * for the n-grams and another for the term vector).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+
+    @Param({"1000", "10000"})
+    private int words;
+
+    private String text;
+    private TextTokenizer tokenizer;
+
+    @Setup
+    public void setUp() {
+        text = SyntheticCorpus.essay(7, words);
+        tokenizer = new TextTokenizer();
+    }
+
+    @Benchmark
+    public void legacyRegexPipeline(Blackhole blackhole) {
+        String normalized = text
+                .toLowerCase()
+                .replaceAll("[^a-z0-9\\s]", "")
+                .replaceAll("\\s+", " ")
+                .trim();
+        for (String word : normalized.split("\\s+")) {
+            blackhole.consume(hash64(word));
+        }
+        for (String word : normalized.split("\\s+")) {
+            blackhole.consume(hash64(word));
+        }
+    }
+
+    @Benchmark
+    public long[] singlePassTokenizer() {
+        return tokenizer.hashTokens(text);
+    }
+
+    // The 64-bit FNV-1a hash the tokenizer computes per token
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -1,15 +1,18 @@
 package com.plagiarism.controller;
 
-import com.plagiarism.dto.AssignmentDTO;
 import com.plagiarism.service.AssignmentService;
+import com.plagiarism.service.PlagiarismMatrixService;
+import com.plagiarism.service.SubmissionImportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -20,6 +23,8 @@ import java.util.Map;
 public class AssignmentController {
 
     private final AssignmentService assignmentService;
+    private final PlagiarismMatrixService plagiarismMatrixService;
+    private final SubmissionImportService submissionImportService;
 
     @PostMapping
     @PreAuthorize("hasRole('TEACHER')")
@@ -42,8 +47,24 @@ public class AssignmentController {
     }
 
     @GetMapping
-    public ResponseEntity<List<AssignmentDTO>> getAllAssignments() {
-        return ResponseEntity.ok(assignmentService.getAllAssignments());
+    public ResponseEntity<?> getAllAssignments(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(assignmentService.getAssignmentPage(cursor, size));
+            }
+            return ResponseEntity.ok(assignmentService.getAllAssignments());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllAssignments() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(assignmentService.streamAllAssignments());
     }
 
     @GetMapping("/{id}")
@@ -57,8 +78,25 @@ public class AssignmentController {
     }
 
     @GetMapping("/teacher/{teacherId}")
-    public ResponseEntity<List<AssignmentDTO>> getAssignmentsByTeacher(@PathVariable Long teacherId) {
-        return ResponseEntity.ok(assignmentService.getAssignmentsByTeacher(teacherId));
+    public ResponseEntity<?> getAssignmentsByTeacher(
+            @PathVariable Long teacherId,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(assignmentService.getAssignmentPageByTeacher(teacherId, cursor, size));
+            }
+            return ResponseEntity.ok(assignmentService.getAssignmentsByTeacher(teacherId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/teacher/{teacherId}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAssignmentsByTeacher(@PathVariable Long teacherId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(assignmentService.streamAssignmentsByTeacher(teacherId));
     }
 
     @PutMapping("/{id}")
@@ -81,6 +119,31 @@ public class AssignmentController {
         }
     }
 
+    @PostMapping("/{id}/plagiarism-matrix")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<?> checkPlagiarismMatrix(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(plagiarismMatrixService.checkAssignment(id));
+        } catch (Exception e) {
+            log.error("Error computing plagiarism matrix", e);
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Import submissions from a ZIP sent as the raw request body, so it bypasses the multipart size limit
+     */
+    @PostMapping("/{id}/submissions/import")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<?> importSubmissions(@PathVariable Long id, InputStream zip) {
+        try {
+            return ResponseEntity.ok(submissionImportService.importZip(id, zip));
+        } catch (Exception e) {
+            log.error("Error importing submissions", e);
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('TEACHER')")
     public ResponseEntity<?> deleteAssignment(@PathVariable Long id) {
@@ -1,18 +1,26 @@
 package com.plagiarism.controller;
 
-import com.plagiarism.dto.SubmissionDTO;
+import com.plagiarism.dto.GradeDTO;
+import com.plagiarism.service.GradingService;
+import com.plagiarism.service.HistoricalCorpusService;
+import com.plagiarism.service.PlagiarismCheckQueue;
 import com.plagiarism.service.PlagiarismService;
 import com.plagiarism.service.SubmissionService;
+import com.plagiarism.service.SubmissionSimilarityService;
+import com.plagiarism.service.TextExtractionQueue;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/submissions")
@@ -22,7 +30,12 @@ import java.util.Map;
 public class SubmissionController {
 
     private final SubmissionService submissionService;
+    private final GradingService gradingService;
     private final PlagiarismService plagiarismService;
+    private final PlagiarismCheckQueue plagiarismCheckQueue;
+    private final SubmissionSimilarityService submissionSimilarityService;
+    private final HistoricalCorpusService historicalCorpusService;
+    private final TextExtractionQueue textExtractionQueue;
 
     @PostMapping("/upload")
     @PreAuthorize("hasRole('STUDENT')")
@@ -50,13 +63,47 @@ public class SubmissionController {
     }
 
     @GetMapping("/assignment/{assignmentId}")
-    public ResponseEntity<List<SubmissionDTO>> getSubmissionsByAssignment(@PathVariable Long assignmentId) {
-        return ResponseEntity.ok(submissionService.getSubmissionsByAssignment(assignmentId));
+    public ResponseEntity<?> getSubmissionsByAssignment(
+            @PathVariable Long assignmentId,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(submissionService.getSubmissionPageByAssignment(assignmentId, cursor, size));
+            }
+            return ResponseEntity.ok(submissionService.getSubmissionsByAssignment(assignmentId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/assignment/{assignmentId}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamSubmissionsByAssignment(@PathVariable Long assignmentId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(submissionService.streamSubmissionsByAssignment(assignmentId));
     }
 
     @GetMapping("/student/{studentId}")
-    public ResponseEntity<List<SubmissionDTO>> getSubmissionsByStudent(@PathVariable Long studentId) {
-        return ResponseEntity.ok(submissionService.getSubmissionsByStudent(studentId));
+    public ResponseEntity<?> getSubmissionsByStudent(
+            @PathVariable Long studentId,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(submissionService.getSubmissionPageByStudent(studentId, cursor, size));
+            }
+            return ResponseEntity.ok(submissionService.getSubmissionsByStudent(studentId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/student/{studentId}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamSubmissionsByStudent(@PathVariable Long studentId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(submissionService.streamSubmissionsByStudent(studentId));
     }
 
     @PostMapping("/{submissionId}/grade")
@@ -75,18 +122,54 @@ public class SubmissionController {
         }
     }
 
+    /**
+     * Grade many submissions at once; each grade gets its own outcome in the response
+     */
+    @PostMapping("/grades")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<?> gradeSubmissions(@RequestBody List<GradeDTO> grades) {
+        try {
+            return ResponseEntity.ok(gradingService.gradeSubmissions(grades));
+        } catch (Exception e) {
+            log.error("Error grading submissions", e);
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/{submissionId}/retry-extraction")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<?> retryExtraction(@PathVariable Long submissionId) {
+        try {
+            textExtractionQueue.retryFailed(submissionId);
+            var submission = submissionService.getSubmissionById(submissionId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(submissionService.convertToDTO(submission));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/{submissionId}/check-plagiarism")
     @PreAuthorize("hasRole('TEACHER')")
     public ResponseEntity<?> checkPlagiarism(@PathVariable Long submissionId) {
         try {
-            var result = plagiarismService.checkPlagiarism(submissionId);
-            return ResponseEntity.ok(plagiarismService.convertResultToDTO(result));
+            var job = plagiarismCheckQueue.enqueue(submissionId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(plagiarismCheckQueue.convertToDTO(job));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Plagiarism check queue is full");
         } catch (Exception e) {
-            log.error("Error checking plagiarism", e);
+            log.error("Error queueing plagiarism check", e);
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
+    @GetMapping("/plagiarism-jobs/{jobId}")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<?> getPlagiarismJob(@PathVariable String jobId) {
+        return plagiarismCheckQueue.getJob(jobId)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok(plagiarismCheckQueue.convertToDTO(job)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/{submissionId}/plagiarism")
     public ResponseEntity<?> getPlagiarismResult(@PathVariable Long submissionId) {
         try {
@@ -100,11 +183,39 @@ public class SubmissionController {
         }
     }
 
+    @GetMapping("/{submissionId}/matches")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<?> getTopMatches(@PathVariable Long submissionId,
+                                           @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(submissionSimilarityService.getTopMatches(submissionId, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{submissionId}/historical-matches")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<?> getHistoricalMatches(@PathVariable Long submissionId,
+                                                  @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(historicalCorpusService.findHistoricalMatches(submissionId, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @GetMapping("/assignment/{assignmentId}/plagiarism-results")
     @PreAuthorize("hasRole('TEACHER')")
-    public ResponseEntity<?> getPlagiarismResultsForAssignment(@PathVariable Long assignmentId) {
+    public ResponseEntity<?> getPlagiarismResultsForAssignment(
+            @PathVariable Long assignmentId,
+            @RequestParam(required = false) Double minScore,
+            @RequestParam(required = false) Double afterScore,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) Integer limit) {
         try {
-            var results = plagiarismService.getAllPlagiarismResultsForAssignment(assignmentId);
+            var results = plagiarismService.getPlagiarismResultsForAssignment(
+                    assignmentId, minScore, afterScore, afterId, limit);
             return ResponseEntity.ok(results);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -1,15 +1,15 @@
 package com.plagiarism.controller;
 
-import com.plagiarism.dto.UserDTO;
 import com.plagiarism.entity.UserRole;
 import com.plagiarism.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,8 +23,25 @@ public class UserController {
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        return ResponseEntity.ok(userService.getAllUsers());
+    public ResponseEntity<?> getAllUsers(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(userService.getUserPage(cursor, size));
+            }
+            return ResponseEntity.ok(userService.getAllUsers());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping(params = "stream=true")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userService.streamAllUsers());
     }
 
     @GetMapping("/{id}")
@@ -39,15 +56,34 @@ public class UserController {
 
     @GetMapping("/role/{role}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<UserDTO>> getUsersByRole(@PathVariable String role) {
+    public ResponseEntity<?> getUsersByRole(
+            @PathVariable String role,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size) {
         try {
             UserRole userRole = UserRole.valueOf(role.toUpperCase());
+            if (cursor != null || size != null) {
+                return ResponseEntity.ok(userService.getUserPageByRole(userRole, cursor, size));
+            }
             return ResponseEntity.ok(userService.getUsersByRole(userRole));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @GetMapping(value = "/role/{role}", params = "stream=true")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> streamUsersByRole(@PathVariable String role) {
+        try {
+            UserRole userRole = UserRole.valueOf(role.toUpperCase());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(userService.streamUsersByRole(userRole));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("/{id}/disable")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> disableUser(@PathVariable Long id) {
@@ -0,0 +1,47 @@
+package com.plagiarism.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a listing ordered by id. Pass {@code nextCursor} as the {@code cursor}
+ * parameter to get the next page; it is null on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 1000;
+
+    private List<T> items;
+    private Long nextCursor;
+
+    /**
+     * Id to continue after; listings start after id 0
+     */
+    public static long afterId(Long cursor) {
+        return cursor != null ? cursor : 0L;
+    }
+
+    public static Pageable pageRequest(Integer size) {
+        int pageSize = size != null ? size : DEFAULT_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_SIZE);
+        }
+        return PageRequest.of(0, pageSize);
+    }
+
+    public static <T> CursorPage<T> of(List<T> items, Pageable page, Function<T, Long> idOf) {
+        Long nextCursor = items.size() == page.getPageSize() ? idOf.apply(items.get(items.size() - 1)) : null;
+        return new CursorPage<>(items, nextCursor);
+    }
+}
@@ -0,0 +1,17 @@
+package com.plagiarism.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GradeDTO {
+    private Long submissionId;
+    private Long version; // version of the submission the grade was entered against
+    private Integer score;
+    private String feedback;
+}
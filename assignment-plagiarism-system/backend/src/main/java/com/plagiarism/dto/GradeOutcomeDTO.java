@@ -0,0 +1,17 @@
+package com.plagiarism.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GradeOutcomeDTO {
+    private Long submissionId;
+    private String outcome; // GRADED, CONFLICT, NOT_FOUND, INVALID
+    private Long version; // new version when GRADED, current version on CONFLICT
+    private String message;
+}
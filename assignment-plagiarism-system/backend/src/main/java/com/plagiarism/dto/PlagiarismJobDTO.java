@@ -0,0 +1,23 @@
+package com.plagiarism.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlagiarismJobDTO {
+    private String jobId;
+    private Long submissionId;
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+    private Long resultId;
+    private String error;
+    private LocalDateTime queuedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,19 @@
+package com.plagiarism.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlagiarismMatrixReportDTO {
+    private Long assignmentId;
+    private Integer submissionCount;
+    private Long pairCount;
+    private Long elapsedMillis;
+    private Long comparisonMillis;
+    private Double pairsPerSecond;
+}
@@ -17,4 +17,5 @@ public class PlagiarismResultDTO {
     private Integer totalComparisons;
     private String detailedReport;
     private LocalDateTime checkedAt;
+    private Boolean stale; // may miss a peer until the submission or assignment is checked again
 }
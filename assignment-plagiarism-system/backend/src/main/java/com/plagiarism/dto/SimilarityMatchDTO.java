@@ -0,0 +1,27 @@
+package com.plagiarism.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimilarityMatchDTO {
+    private Long peerSubmissionId;
+    private Long assignmentId;
+    private Long studentId;
+    private String studentName;
+    private String fileName;
+    private Double score;
+
+    /**
+     * Details of a matched submission whose score is filled in afterwards
+     */
+    public SimilarityMatchDTO(Long peerSubmissionId, Long assignmentId, Long studentId, String studentName,
+                              String fileName) {
+        this(peerSubmissionId, assignmentId, studentId, studentName, fileName, null);
+    }
+}
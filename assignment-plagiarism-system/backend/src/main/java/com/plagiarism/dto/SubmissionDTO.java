@@ -1,5 +1,6 @@
 package com.plagiarism.dto;
 
+import com.plagiarism.entity.SubmissionStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,9 +18,31 @@ public class SubmissionDTO {
     private Long studentId;
     private String studentName;
     private String fileName;
+    private Long exactDuplicateOf;
     private String status;
     private Integer score;
     private String feedback;
+    private Long version; // pass back when bulk grading
     private LocalDateTime submittedAt;
     private PlagiarismResultDTO plagiarismResult;
+
+    /**
+     * Flat constructor for the listing projections in SubmissionRepository,
+     * which select the submission, student and result columns in one query
+     */
+    public SubmissionDTO(Long id, Long assignmentId, Long studentId, String studentName, String fileName,
+                         Long exactDuplicateOf, SubmissionStatus status, Integer score, String feedback,
+                         Long version, LocalDateTime submittedAt, Long resultId, Double similarityScore,
+                         Integer totalComparisons, String detailedReport, LocalDateTime checkedAt,
+                         Boolean stale) {
+        this(id, assignmentId, studentId, studentName, fileName, exactDuplicateOf, status.toString(),
+                score, feedback, version, submittedAt, resultId == null ? null : PlagiarismResultDTO.builder()
+                        .id(resultId)
+                        .similarityScore(similarityScore)
+                        .totalComparisons(totalComparisons)
+                        .detailedReport(detailedReport)
+                        .checkedAt(checkedAt)
+                        .stale(stale)
+                        .build());
+    }
 }
@@ -0,0 +1,21 @@
+package com.plagiarism.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionImportReportDTO {
+    private Long assignmentId;
+    private Integer importedCount;
+    private Integer replacedCount;
+    private List<Long> submissionIds;
+    private List<String> skipped; // "<entry>: <reason>" for every file or manifest line not imported
+    private Long elapsedMillis;
+}
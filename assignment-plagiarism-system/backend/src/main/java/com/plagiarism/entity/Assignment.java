@@ -25,7 +25,9 @@ public class Assignment {
     @Column(length = 2000)
     private String description;
 
-    @ManyToOne
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "teacher_id", nullable = false)
     private User teacher;
 
@@ -41,6 +43,8 @@ public class Assignment {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "assignment", cascade = CascadeType.ALL)
     private List<Submission> submissions = new ArrayList<>();
 }
@@ -7,17 +7,25 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "plagiarism_results")
+@Table(name = "plagiarism_results", indexes = {
+        @Index(name = "idx_result_score", columnList = "similarity_score, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class PlagiarismResult {
+    // Sequence ids let the results of many peers be inserted in one JDBC batch
+    public static final String ID_SEQUENCE = "plagiarism_result_seq";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = 50)
     private Long id;
 
-    @OneToOne
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "submission_id", nullable = false)
     private Submission submission;
 
@@ -27,6 +35,20 @@ public class PlagiarismResult {
     @Column(name = "total_comparisons")
     private Integer totalComparisons;
 
+    // Running aggregates so the result can be updated incrementally as peers arrive
+    @Column(name = "max_score")
+    private Double maxScore;
+
+    @Column(name = "score_sum")
+    private Double scoreSum;
+
+    @Column(name = "matched_comparisons")
+    private Integer matchedComparisons;
+
+    // Set when an incremental update failed and the aggregates may miss a peer; cleared by a full check
+    @Column(name = "stale")
+    private Boolean stale;
+
     @Column(columnDefinition = "LONGTEXT")
     private String detailedReport;
 
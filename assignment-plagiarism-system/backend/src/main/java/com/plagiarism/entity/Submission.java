@@ -8,21 +8,32 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "submissions")
+@Table(name = "submissions", indexes = {
+        @Index(name = "idx_submission_assignment_content", columnList = "assignment_id, content_hash"),
+        @Index(name = "idx_submission_content", columnList = "content_hash")
+})
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Submission {
+    // Pooled sequence rather than IDENTITY, so Hibernate can batch inserts
+    public static final String ID_SEQUENCE = "submission_seq";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "assignment_id", nullable = false)
     private Assignment assignment;
 
-    @ManyToOne
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "student_id", nullable = false)
     private User student;
 
@@ -32,25 +43,41 @@ public class Submission {
     @Column(name = "file_name")
     private String fileName;
 
-    @Column(columnDefinition = "LONGTEXT")
-    private String extractedText;
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 of the uploaded bytes
+
+    @Column(name = "exact_duplicate_of")
+    private Long exactDuplicateOf; // earlier submission with byte-identical content
 
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private SubmissionStatus status;
 
+    @Column(name = "extraction_attempts")
+    private Integer extractionAttempts; // failed text extraction attempts
+
+    @Column(name = "extraction_error", length = 1000)
+    private String extractionError; // error of the last failed extraction
+
     @Column(name = "score")
     private Integer score;
 
     @Column(length = 1000)
     private String feedback;
 
+    // Bumped on every entity update and by bulk grading, which only applies grades made against the current version
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToOne(mappedBy = "submission", cascade = CascadeType.ALL)
     private PlagiarismResult plagiarismResult;
 }
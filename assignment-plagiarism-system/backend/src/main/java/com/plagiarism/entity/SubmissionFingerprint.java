@@ -0,0 +1,42 @@
+package com.plagiarism.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "submission_fingerprints", indexes = {
+        @Index(name = "idx_fingerprint_assignment", columnList = "assignment_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionFingerprint {
+    @Id
+    @Column(name = "submission_id")
+    private Long submissionId;
+
+    @Column(name = "assignment_id", nullable = false)
+    private Long assignmentId;
+
+    @Column(nullable = false)
+    private Integer version;
+
+    @Column(name = "ngram_hashes", columnDefinition = "LONGBLOB")
+    private byte[] ngramHashes; // sorted 64-bit n-gram hashes
+
+    @Column(name = "term_vector", columnDefinition = "LONGBLOB")
+    private byte[] termVector; // (term hash, count) pairs
+
+    @Column(nullable = false)
+    private Double norm;
+
+    @Column(name = "minhash_signature", length = 512)
+    private byte[] minhashSignature; // 128 x 32-bit MinHash values
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
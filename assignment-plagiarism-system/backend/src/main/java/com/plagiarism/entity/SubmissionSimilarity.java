@@ -0,0 +1,46 @@
+package com.plagiarism.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Score of one ordered pair of submissions in the same assignment. Every scored pair
+ * is stored in both directions so the matches of a submission are a prefix scan of
+ * its index entries; pairs that scored zero are not stored.
+ */
+@Entity
+@Table(name = "submission_similarities", indexes = {
+        @Index(name = "idx_similarity_top", columnList = "submission_id, score, peer_id"),
+        @Index(name = "idx_similarity_peer", columnList = "peer_id"),
+        @Index(name = "idx_similarity_assignment", columnList = "assignment_id")
+})
+@IdClass(SubmissionSimilarity.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionSimilarity {
+    @Id
+    @Column(name = "submission_id")
+    private Long submissionId;
+
+    @Id
+    @Column(name = "peer_id")
+    private Long peerId;
+
+    @Column(name = "assignment_id", nullable = false)
+    private Long assignmentId;
+
+    @Column(nullable = false)
+    private Double score;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long submissionId;
+        private Long peerId;
+    }
+}
@@ -1,6 +1,8 @@
 package com.plagiarism.entity;
 
 public enum SubmissionStatus {
+    EXTRACTING,         // stored, text extraction queued or running
+    EXTRACTION_FAILED,  // extraction failed on every attempt
     SUBMITTED,
     UNDER_REVIEW,
     PLAGIARISM_CHECK_PENDING,
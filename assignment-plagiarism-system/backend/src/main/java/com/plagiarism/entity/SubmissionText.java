@@ -0,0 +1,32 @@
+package com.plagiarism.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Extracted text of a submission, kept out of the submissions row and
+ * Deflate-compressed so listing queries never touch it
+ */
+@Entity
+@Table(name = "submission_texts")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionText {
+    @Id
+    @Column(name = "submission_id")
+    private Long submissionId;
+
+    @Column(name = "compressed_text", columnDefinition = "LONGBLOB")
+    private byte[] compressedText; // Deflate-compressed UTF-8
+
+    @Column(name = "text_length", nullable = false)
+    private Integer textLength; // characters before compression
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
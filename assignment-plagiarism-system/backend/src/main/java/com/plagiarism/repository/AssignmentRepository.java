@@ -1,14 +1,45 @@
 package com.plagiarism.repository;
 
+import com.plagiarism.dto.AssignmentDTO;
 import com.plagiarism.entity.Assignment;
 import com.plagiarism.entity.User;
+import com.plagiarism.util.JsonArrayStreamer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
     List<Assignment> findByTeacher(User teacher);
     List<Assignment> findAll();
+
+    String ASSIGNMENT_DTO_SELECT = "select new com.plagiarism.dto.AssignmentDTO(" +
+            "a.id, a.title, a.description, a.dueDate, a.maxScore, t.fullName, t.id, a.createdAt) " +
+            "from Assignment a join a.teacher t ";
+
+    // Listing projections: one statement each, without loading the teacher entity.
+    // Pages are keyed by id; pass 0 for the first page and Pageable.unpaged() for everything.
+    @Query(ASSIGNMENT_DTO_SELECT + "where a.id > :afterId order by a.id")
+    List<AssignmentDTO> findAllDTOs(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(ASSIGNMENT_DTO_SELECT + "where t.id = :teacherId and a.id > :afterId order by a.id")
+    List<AssignmentDTO> findDTOsByTeacherId(@Param("teacherId") Long teacherId,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+
+    @Query(ASSIGNMENT_DTO_SELECT + "order by a.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonArrayStreamer.FETCH_SIZE))
+    Stream<AssignmentDTO> streamAllDTOs();
+
+    @Query(ASSIGNMENT_DTO_SELECT + "where t.id = :teacherId order by a.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonArrayStreamer.FETCH_SIZE))
+    Stream<AssignmentDTO> streamDTOsByTeacherId(@Param("teacherId") Long teacherId);
 }
@@ -1,13 +1,50 @@
 package com.plagiarism.repository;
 
+import com.plagiarism.dto.PlagiarismResultDTO;
 import com.plagiarism.entity.PlagiarismResult;
 import com.plagiarism.entity.Submission;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PlagiarismResultRepository extends JpaRepository<PlagiarismResult, Long> {
     Optional<PlagiarismResult> findBySubmission(Submission submission);
+    List<PlagiarismResult> findBySubmissionIdIn(Collection<Long> submissionIds);
+    List<PlagiarismResult> findBySubmissionAssignmentId(Long assignmentId);
+
+    /**
+     * One page of an assignment's results, highest score first, selecting only the DTO columns.
+     * Keyset pagination: pass the score and id of the last row of the previous page, or nulls
+     * for the first page.
+     */
+    @Query("select new com.plagiarism.dto.PlagiarismResultDTO(" +
+            "r.id, r.similarityScore, r.totalComparisons, r.detailedReport, r.checkedAt, coalesce(r.stale, false)) " +
+            "from PlagiarismResult r " +
+            "where r.submission.assignment.id = :assignmentId and r.similarityScore >= :minScore " +
+            "and (:afterScore is null or r.similarityScore < :afterScore " +
+            "or (r.similarityScore = :afterScore and r.id < :afterId)) " +
+            "order by r.similarityScore desc, r.id desc")
+    List<PlagiarismResultDTO> findReportPage(@Param("assignmentId") Long assignmentId,
+                                             @Param("minScore") Double minScore,
+                                             @Param("afterScore") Double afterScore,
+                                             @Param("afterId") Long afterId,
+                                             Pageable pageable);
+
+    /**
+     * Flag every result of an assignment whose aggregates may miss a peer
+     */
+    @Modifying
+    @Transactional
+    @Query("update PlagiarismResult r set r.stale = true " +
+            "where r.submission.id in (select s.id from Submission s where s.assignment.id = :assignmentId)")
+    int markStale(@Param("assignmentId") Long assignmentId);
 }
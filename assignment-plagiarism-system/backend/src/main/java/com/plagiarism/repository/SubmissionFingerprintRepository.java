@@ -0,0 +1,31 @@
+package com.plagiarism.repository;
+
+import com.plagiarism.entity.SubmissionFingerprint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SubmissionFingerprintRepository extends JpaRepository<SubmissionFingerprint, Long> {
+    List<SubmissionFingerprint> findByAssignmentIdOrderBySubmissionId(Long assignmentId);
+    long countByAssignmentIdAndVersion(Long assignmentId, Integer version);
+
+    // Loads only the small signature column, not the n-gram and term vector blobs
+    @Query("select f.submissionId, f.minhashSignature from SubmissionFingerprint f " +
+            "where f.assignmentId = :assignmentId and f.version = :version")
+    List<Object[]> findSignaturesByAssignmentId(@Param("assignmentId") Long assignmentId,
+                                                @Param("version") Integer version);
+
+    // Ids only, so indexed submissions are skipped without loading their blobs
+    @Query("select f.submissionId from SubmissionFingerprint f " +
+            "where f.submissionId > :afterId and f.version = :version order by f.submissionId")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, @Param("version") Integer version, Pageable pageable);
+
+    @Query("select f.submissionId from SubmissionFingerprint f where f.submissionId in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+}
@@ -1,13 +1,28 @@
 package com.plagiarism.repository;
 
+import com.plagiarism.dto.SimilarityMatchDTO;
+import com.plagiarism.dto.SubmissionDTO;
 import com.plagiarism.entity.Assignment;
 import com.plagiarism.entity.Submission;
+import com.plagiarism.entity.SubmissionStatus;
 import com.plagiarism.entity.User;
+import com.plagiarism.util.JsonArrayStreamer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SubmissionRepository extends JpaRepository<Submission, Long> {
@@ -15,4 +30,99 @@ public interface SubmissionRepository extends JpaRepository<Submission, Long> {
     List<Submission> findByAssignment(Assignment assignment);
     Optional<Submission> findByAssignmentAndStudent(Assignment assignment, User student);
     List<Submission> findByAssignmentId(Long assignmentId);
+    Optional<Submission> findFirstByAssignmentIdAndContentHashOrderById(Long assignmentId, String contentHash);
+
+    List<Submission> findByAssignmentIdAndStudentIdIn(Long assignmentId, Collection<Long> studentIds);
+
+    // Content hash and the id of the first submission with it, for the given hashes
+    @Query("select s.contentHash, min(s.id) from Submission s " +
+            "where s.assignment.id = :assignmentId and s.contentHash in :contentHashes group by s.contentHash")
+    List<Object[]> findFirstIdsByContentHash(@Param("assignmentId") Long assignmentId,
+                                             @Param("contentHashes") Collection<String> contentHashes);
+
+    // The given content hashes that some submission, in any assignment, still points at
+    @Query("select distinct s.contentHash from Submission s where s.contentHash in :contentHashes")
+    List<String> findContentHashesIn(@Param("contentHashes") Collection<String> contentHashes);
+
+    // Id, version and the assignment's max score of the given submissions, for grading
+    @Query("select s.id, s.version, a.maxScore from Submission s join s.assignment a where s.id in :ids")
+    List<Object[]> findVersionsAndMaxScores(@Param("ids") Collection<Long> ids);
+
+    // Id, version, score, feedback and status, to tell whether a batched grade was applied
+    @Query("select s.id, s.version, s.score, s.feedback, s.status from Submission s where s.id in :ids")
+    List<Object[]> findGrades(@Param("ids") Collection<Long> ids);
+
+    String SUBMISSION_DTO_SELECT = "select new com.plagiarism.dto.SubmissionDTO(" +
+            "s.id, s.assignment.id, st.id, st.fullName, s.fileName, s.exactDuplicateOf, s.status, s.score, " +
+            "s.feedback, s.version, s.createdAt, r.id, r.similarityScore, r.totalComparisons, r.detailedReport, r.checkedAt, " +
+            "coalesce(r.stale, false)) " +
+            "from Submission s join s.student st left join s.plagiarismResult r ";
+
+    // Listing projections: one statement each, no entities or LONGTEXT highlights loaded.
+    // Pages are keyed by id; pass 0 for the first page and Pageable.unpaged() for everything.
+    @Query(SUBMISSION_DTO_SELECT + "where s.assignment.id = :assignmentId and s.id > :afterId order by s.id")
+    List<SubmissionDTO> findDTOsByAssignmentId(@Param("assignmentId") Long assignmentId,
+                                               @Param("afterId") Long afterId,
+                                               Pageable pageable);
+
+    @Query(SUBMISSION_DTO_SELECT + "where st.id = :studentId and s.id > :afterId order by s.id")
+    List<SubmissionDTO> findDTOsByStudentId(@Param("studentId") Long studentId,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+
+    @Query(SUBMISSION_DTO_SELECT + "where s.assignment.id = :assignmentId order by s.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonArrayStreamer.FETCH_SIZE))
+    Stream<SubmissionDTO> streamDTOsByAssignmentId(@Param("assignmentId") Long assignmentId);
+
+    @Query(SUBMISSION_DTO_SELECT + "where st.id = :studentId order by s.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonArrayStreamer.FETCH_SIZE))
+    Stream<SubmissionDTO> streamDTOsByStudentId(@Param("studentId") Long studentId);
+
+    // Everything a match listing shows about the matched submissions except the score
+    @Query("select new com.plagiarism.dto.SimilarityMatchDTO(s.id, s.assignment.id, st.id, st.fullName, s.fileName) " +
+            "from Submission s join s.student st where s.id in :ids")
+    List<SimilarityMatchDTO> findMatchDetails(@Param("ids") Collection<Long> ids);
+
+    @Query("select s.id from Submission s where s.assignment.id = :assignmentId order by s.id")
+    List<Long> findIdsByAssignmentId(@Param("assignmentId") Long assignmentId);
+
+    @Query("select s.id from Submission s where s.status = :status order by s.id")
+    List<Long> findIdsByStatus(@Param("status") SubmissionStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("update Submission s set s.status = :status where s.id in :ids and s.status in :fromStatuses")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("status") SubmissionStatus status,
+                     @Param("fromStatuses") Collection<SubmissionStatus> fromStatuses);
+
+    // Targeted writes instead of saving the entity, so they never fail its version check.
+    // A grade bumps the version like a bulk grade does; extraction bookkeeping does not.
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Submission s set s.score = :score, s.feedback = :feedback, s.status = :status, " +
+            "s.version = s.version + 1, s.updatedAt = :updatedAt where s.id = :id")
+    int updateGrade(@Param("id") Long id,
+                    @Param("score") Integer score,
+                    @Param("feedback") String feedback,
+                    @Param("status") SubmissionStatus status,
+                    @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Submission s set s.status = :status, s.version = s.version + 1, s.updatedAt = :updatedAt " +
+            "where s.id = :id")
+    int updateStatusById(@Param("id") Long id,
+                         @Param("status") SubmissionStatus status,
+                         @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Submission s set s.status = :status, s.extractionAttempts = :attempts, " +
+            "s.extractionError = :error where s.id = :id and s.status in :fromStatuses")
+    int updateExtractionState(@Param("id") Long id,
+                              @Param("status") SubmissionStatus status,
+                              @Param("attempts") Integer attempts,
+                              @Param("error") String error,
+                              @Param("fromStatuses") Collection<SubmissionStatus> fromStatuses);
 }
@@ -0,0 +1,32 @@
+package com.plagiarism.repository;
+
+import com.plagiarism.dto.SimilarityMatchDTO;
+import com.plagiarism.entity.SubmissionSimilarity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SubmissionSimilarityRepository extends JpaRepository<SubmissionSimilarity, SubmissionSimilarity.Key> {
+
+    /**
+     * The best-scoring peers of a submission, read from the (submission_id, score) index
+     */
+    @Query("select new com.plagiarism.dto.SimilarityMatchDTO(" +
+            "s.peerId, p.assignment.id, st.id, st.fullName, p.fileName, s.score) " +
+            "from SubmissionSimilarity s join Submission p on p.id = s.peerId join p.student st " +
+            "where s.submissionId = :submissionId " +
+            "order by s.score desc, s.peerId desc")
+    List<SimilarityMatchDTO> findTopMatches(@Param("submissionId") Long submissionId, Pageable pageable);
+
+    // Highest remaining score of every submission in an assignment, ignoring one peer
+    @Query("select s.submissionId, max(s.score) from SubmissionSimilarity s " +
+            "where s.assignmentId = :assignmentId and s.peerId <> :excludedPeerId " +
+            "group by s.submissionId")
+    List<Object[]> findMaxScores(@Param("assignmentId") Long assignmentId,
+                                 @Param("excludedPeerId") Long excludedPeerId);
+}
@@ -0,0 +1,9 @@
+package com.plagiarism.repository;
+
+import com.plagiarism.entity.SubmissionText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SubmissionTextRepository extends JpaRepository<SubmissionText, Long> {
+}
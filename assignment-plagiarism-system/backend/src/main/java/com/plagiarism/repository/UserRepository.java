@@ -1,16 +1,48 @@
 package com.plagiarism.repository;
 
+import com.plagiarism.dto.UserDTO;
 import com.plagiarism.entity.User;
 import com.plagiarism.entity.UserRole;
+import com.plagiarism.util.JsonArrayStreamer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
+    List<User> findByEmailIn(Collection<String> emails);
     List<User> findByRole(UserRole role);
     boolean existsByEmail(String email);
+
+    @Query("select u.enabled from User u where u.id = :id")
+    Optional<Boolean> findEnabledById(@Param("id") Long id);
+
+    String USER_DTO_SELECT = "select new com.plagiarism.dto.UserDTO(u.id, u.email, u.fullName, u.role, u.enabled) " +
+            "from User u ";
+
+    // Listing projections keyed by id; pass 0 for the first page and Pageable.unpaged() for everything
+    @Query(USER_DTO_SELECT + "where u.id > :afterId order by u.id")
+    List<UserDTO> findAllDTOs(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(USER_DTO_SELECT + "where u.role = :role and u.id > :afterId order by u.id")
+    List<UserDTO> findDTOsByRole(@Param("role") UserRole role, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(USER_DTO_SELECT + "order by u.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonArrayStreamer.FETCH_SIZE))
+    Stream<UserDTO> streamAllDTOs();
+
+    @Query(USER_DTO_SELECT + "where u.role = :role order by u.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonArrayStreamer.FETCH_SIZE))
+    Stream<UserDTO> streamDTOsByRole(@Param("role") UserRole role);
 }
@@ -0,0 +1,32 @@
+package com.plagiarism.security;
+
+import com.plagiarism.entity.UserRole;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Authenticated user as described by the claims of their JWT, so requests can be
+ * authorized without loading the user from the database
+ */
+@Getter
+@AllArgsConstructor
+public class JwtUserPrincipal implements Principal {
+    private final Long id;
+    private final String email;
+    private final UserRole role;
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+}
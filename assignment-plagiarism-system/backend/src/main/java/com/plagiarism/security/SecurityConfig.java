@@ -1,6 +1,7 @@
 package com.plagiarism.security;
 
 import com.plagiarism.service.UserService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
@@ -24,6 +25,7 @@ public class SecurityConfig {
 
     private final JwtTokenProvider jwtTokenProvider;
     private final ObjectProvider<UserService> userServiceProvider;
+    private final UserStatusCache userStatusCache;
 
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -49,13 +51,18 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(authz -> authz
+                        // Streamed responses complete on an async dispatch of an already authorized request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/assignments/**").permitAll()
+                        // Job ids are only handed to the teacher who queued the check
+                        .requestMatchers(HttpMethod.GET, "/api/submissions/plagiarism-jobs/**").hasRole("TEACHER")
                         .requestMatchers(HttpMethod.GET, "/api/submissions/**").permitAll()
                         .anyRequest().authenticated()
                 )
                 .authenticationProvider(authenticationProvider())
-                .addFilterBefore(new JwtAuthenticationFilter(jwtTokenProvider, userServiceProvider.getObject()),
+                .addFilterBefore(
+                        new JwtAuthenticationFilter(jwtTokenProvider, userServiceProvider.getObject(), userStatusCache),
                         UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -0,0 +1,54 @@
+package com.plagiarism.security;
+
+import com.plagiarism.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of whether a user account is enabled, consulted on every
+ * authenticated request. Entries are evicted when an account is disabled, enabled
+ * or deleted on this instance, and expire after the TTL otherwise.
+ */
+@Component
+public class UserStatusCache {
+
+    // Expired entries are swept once the cache grows past this size
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private record Entry(boolean enabled, long expiresAt) {
+    }
+
+    public UserStatusCache(UserRepository userRepository,
+                           @Value("${jwt.user-status-ttl-seconds:30}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * Whether the user exists and is enabled
+     */
+    public boolean isEnabled(Long userId) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(userId);
+        if (entry == null || now - entry.expiresAt() > 0) {
+            boolean enabled = userRepository.findEnabledById(userId).orElse(false);
+            entry = new Entry(enabled, now + ttlNanos);
+            if (entries.size() >= SWEEP_THRESHOLD) {
+                entries.values().removeIf(e -> now - e.expiresAt() > 0);
+            }
+            entries.put(userId, entry);
+        }
+        return entry.enabled();
+    }
+
+    public void evict(Long userId) {
+        entries.remove(userId);
+    }
+}
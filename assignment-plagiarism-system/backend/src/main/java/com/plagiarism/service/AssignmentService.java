@@ -1,16 +1,19 @@
 package com.plagiarism.service;
 
 import com.plagiarism.dto.AssignmentDTO;
+import com.plagiarism.dto.CursorPage;
 import com.plagiarism.entity.Assignment;
 import com.plagiarism.entity.User;
 import com.plagiarism.repository.AssignmentRepository;
+import com.plagiarism.util.JsonArrayStreamer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -19,6 +22,7 @@ public class AssignmentService {
 
     private final AssignmentRepository assignmentRepository;
     private final UserService userService;
+    private final JsonArrayStreamer jsonArrayStreamer;
 
     public Assignment createAssignment(String title, String description, Long teacherId, LocalDateTime dueDate, Integer maxScore) {
         User teacher = userService.getUserById(teacherId);
@@ -40,16 +44,31 @@ public class AssignmentService {
     }
 
     public List<AssignmentDTO> getAllAssignments() {
-        return assignmentRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return assignmentRepository.findAllDTOs(0L, Pageable.unpaged());
+    }
+
+    public CursorPage<AssignmentDTO> getAssignmentPage(Long cursor, Integer size) {
+        Pageable page = CursorPage.pageRequest(size);
+        return CursorPage.of(assignmentRepository.findAllDTOs(CursorPage.afterId(cursor), page),
+                page, AssignmentDTO::getId);
+    }
+
+    public StreamingResponseBody streamAllAssignments() {
+        return jsonArrayStreamer.stream(assignmentRepository::streamAllDTOs);
     }
 
     public List<AssignmentDTO> getAssignmentsByTeacher(Long teacherId) {
-        User teacher = userService.getUserById(teacherId);
-        return assignmentRepository.findByTeacher(teacher).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return assignmentRepository.findDTOsByTeacherId(teacherId, 0L, Pageable.unpaged());
+    }
+
+    public CursorPage<AssignmentDTO> getAssignmentPageByTeacher(Long teacherId, Long cursor, Integer size) {
+        Pageable page = CursorPage.pageRequest(size);
+        return CursorPage.of(assignmentRepository.findDTOsByTeacherId(teacherId, CursorPage.afterId(cursor), page),
+                page, AssignmentDTO::getId);
+    }
+
+    public StreamingResponseBody streamAssignmentsByTeacher(Long teacherId) {
+        return jsonArrayStreamer.stream(() -> assignmentRepository.streamDTOsByTeacherId(teacherId));
     }
 
     public Assignment updateAssignment(Long id, String title, String description, LocalDateTime dueDate, Integer maxScore) {
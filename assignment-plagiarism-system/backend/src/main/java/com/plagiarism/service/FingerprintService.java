@@ -0,0 +1,251 @@
+package com.plagiarism.service;
+
+import com.plagiarism.entity.Submission;
+import com.plagiarism.entity.SubmissionFingerprint;
+import com.plagiarism.entity.SubmissionStatus;
+import com.plagiarism.repository.SubmissionFingerprintRepository;
+import com.plagiarism.repository.SubmissionRepository;
+import com.plagiarism.util.CandidateStrategy;
+import com.plagiarism.util.CorpusIndex;
+import com.plagiarism.util.MinHashLshIndex;
+import com.plagiarism.util.NGramIndex;
+import com.plagiarism.util.PlagiarismDetectionEngine;
+import com.plagiarism.util.TextFingerprint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class FingerprintService {
+
+    private final SubmissionFingerprintRepository fingerprintRepository;
+    private final SubmissionRepository submissionRepository;
+    private final PlagiarismDetectionEngine plagiarismEngine;
+    private final NGramIndex nGramIndex;
+    private final MinHashLshIndex lshIndex;
+    private final CorpusIndex corpusIndex;
+    private final SubmissionTextService submissionTextService;
+
+    @Value("${plagiarism.candidates.strategy:NGRAM_INDEX}")
+    private CandidateStrategy candidateStrategy;
+
+    // Peers sharing fewer n-grams than this are not scored by the NGRAM_INDEX and CORPUS strategies
+    @Value("${plagiarism.candidates.min-shared-ngrams:1}")
+    private int minSharedNGrams;
+
+    /**
+     * Compute and persist the fingerprint of a submission's extracted text
+     */
+    public TextFingerprint createFingerprint(Submission submission) {
+        return saveFingerprint(submission, plagiarismEngine.createFingerprint(submissionTextService.getText(submission)));
+    }
+
+    /**
+     * Persist a fingerprint computed elsewhere, e.g. while the text was being extracted
+     */
+    public TextFingerprint saveFingerprint(Submission submission, TextFingerprint fingerprint) {
+        fingerprintRepository.save(SubmissionFingerprint.builder()
+                .submissionId(submission.getId())
+                .assignmentId(submission.getAssignment().getId())
+                .version(TextFingerprint.VERSION)
+                .ngramHashes(TextFingerprint.encodeHashes(fingerprint.getNGramHashes()))
+                .termVector(TextFingerprint.encodeTermVector(fingerprint.getTermHashes(), fingerprint.getTermCounts()))
+                .norm(fingerprint.getNorm())
+                .minhashSignature(TextFingerprint.encodeSignature(fingerprint.getMinHashSignature()))
+                .build());
+
+        Long assignmentId = submission.getAssignment().getId();
+        afterCommit(() -> {
+            nGramIndex.add(assignmentId, submission.getId(), fingerprint.getNGramHashes());
+            lshIndex.add(assignmentId, submission.getId(),
+                    plagiarismEngine.computeLshBucketKeys(fingerprint.getMinHashSignature()));
+            corpusIndex.add(submission.getId(), assignmentId, fingerprint);
+        });
+
+        log.debug("Stored fingerprint for submission {} ({} n-grams)",
+                submission.getId(), fingerprint.getNGramHashes().length);
+        return fingerprint;
+    }
+
+    /**
+     * Get the stored fingerprint of a submission, recomputing it if it is missing or stale
+     */
+    public TextFingerprint getFingerprint(Submission submission) {
+        return fingerprintRepository.findById(submission.getId())
+                .filter(this::isCurrent)
+                .map(this::toFingerprint)
+                .orElseGet(() -> createFingerprint(submission));
+    }
+
+    /**
+     * Get the fingerprints of every submission in an assignment keyed by submission id.
+     * Submissions uploaded before fingerprints existed are backfilled on first use.
+     */
+    public Map<Long, TextFingerprint> getFingerprintsForAssignment(Long assignmentId) {
+        Map<Long, TextFingerprint> fingerprints = new LinkedHashMap<>();
+        for (SubmissionFingerprint stored : fingerprintRepository.findByAssignmentIdOrderBySubmissionId(assignmentId)) {
+            if (isCurrent(stored)) {
+                fingerprints.put(stored.getSubmissionId(), toFingerprint(stored));
+            }
+        }
+
+        List<Long> missingIds = submissionRepository.findIdsByAssignmentId(assignmentId).stream()
+                .filter(id -> !fingerprints.containsKey(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            log.info("Backfilling {} fingerprints for assignment {}", missingIds.size(), assignmentId);
+            for (Submission submission : submissionRepository.findAllById(missingIds)) {
+                backfillFingerprint(submission)
+                        .ifPresent(fingerprint -> fingerprints.put(submission.getId(), fingerprint));
+            }
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Get the fingerprints of the peers worth scoring against a submission, selected
+     * according to the configured {@link CandidateStrategy}. Peers that are not
+     * returned share no meaningful n-grams (or LSH buckets) with the submission.
+     */
+    public Map<Long, TextFingerprint> getCandidateFingerprints(Submission submission, TextFingerprint fingerprint) {
+        Long assignmentId = submission.getAssignment().getId();
+        Set<Long> candidateIds;
+
+        // The corpus index only answers once it holds every stored fingerprint
+        CandidateStrategy strategy = candidateStrategy == CandidateStrategy.CORPUS && !corpusIndex.isReady()
+                ? CandidateStrategy.NGRAM_INDEX
+                : candidateStrategy;
+        switch (strategy) {
+            case CORPUS -> candidateIds = corpusIndex.findCandidates(
+                    fingerprint.getNGramHashes(), Math.max(minSharedNGrams, 1), id -> id == assignmentId).stream()
+                    .map(CorpusIndex.Candidate::submissionId)
+                    .collect(Collectors.toCollection(TreeSet::new));
+            case NGRAM_INDEX -> {
+                nGramIndex.ensureLoaded(assignmentId, () -> {
+                    Map<Long, long[]> keys = new HashMap<>();
+                    getFingerprintsForAssignment(assignmentId).forEach((id, fp) -> keys.put(id, fp.getNGramHashes()));
+                    return keys;
+                });
+                candidateIds = new TreeSet<>(nGramIndex.findCandidates(
+                        assignmentId, fingerprint.getNGramHashes(), Math.max(minSharedNGrams, 1)).keySet());
+            }
+            case MINHASH_LSH -> {
+                lshIndex.ensureLoaded(assignmentId, () -> getLshBucketKeysForAssignment(assignmentId));
+                candidateIds = new TreeSet<>(lshIndex.findCandidates(
+                        assignmentId, plagiarismEngine.computeLshBucketKeys(fingerprint.getMinHashSignature()), 1)
+                        .keySet());
+            }
+            default -> {
+                Map<Long, TextFingerprint> peers = getFingerprintsForAssignment(assignmentId);
+                peers.remove(submission.getId());
+                return peers;
+            }
+        }
+        candidateIds.remove(submission.getId());
+
+        Map<Long, TextFingerprint> candidates = new TreeMap<>();
+        for (SubmissionFingerprint stored : fingerprintRepository.findAllById(candidateIds)) {
+            if (isCurrent(stored)) {
+                candidates.put(stored.getSubmissionId(), toFingerprint(stored));
+            }
+        }
+
+        // Stale fingerprints are recomputed from the stored text, as for a whole assignment
+        List<Long> missingIds = candidateIds.stream()
+                .filter(id -> !candidates.containsKey(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            log.info("Backfilling {} candidate fingerprints for assignment {}", missingIds.size(), assignmentId);
+            for (Submission peer : submissionRepository.findAllById(missingIds)) {
+                backfillFingerprint(peer).ifPresent(peerFingerprint -> candidates.put(peer.getId(), peerFingerprint));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * LSH bucket keys of every submission in an assignment, built from the persisted
+     * signatures alone so the n-gram and term vector blobs are never loaded
+     */
+    private Map<Long, long[]> getLshBucketKeysForAssignment(Long assignmentId) {
+        Map<Long, long[]> bucketKeys = new HashMap<>();
+        for (Object[] row : fingerprintRepository.findSignaturesByAssignmentId(assignmentId, TextFingerprint.VERSION)) {
+            int[] signature = TextFingerprint.decodeSignature((byte[]) row[1]);
+            bucketKeys.put((Long) row[0], plagiarismEngine.computeLshBucketKeys(signature));
+        }
+
+        List<Long> missingIds = submissionRepository.findIdsByAssignmentId(assignmentId).stream()
+                .filter(id -> !bucketKeys.containsKey(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            log.info("Backfilling {} fingerprints for assignment {}", missingIds.size(), assignmentId);
+            for (Submission submission : submissionRepository.findAllById(missingIds)) {
+                backfillFingerprint(submission).ifPresent(fingerprint -> bucketKeys.put(submission.getId(),
+                        plagiarismEngine.computeLshBucketKeys(fingerprint.getMinHashSignature())));
+            }
+        }
+        return bucketKeys;
+    }
+
+    /**
+     * Number of submissions in an assignment with a current fingerprint, i.e. the peers a check covers
+     */
+    public long countFingerprints(Long assignmentId) {
+        return fingerprintRepository.countByAssignmentIdAndVersion(assignmentId, TextFingerprint.VERSION);
+    }
+
+    public void deleteFingerprint(Submission submission) {
+        if (fingerprintRepository.existsById(submission.getId())) {
+            fingerprintRepository.deleteById(submission.getId());
+        }
+        Long assignmentId = submission.getAssignment().getId();
+        afterCommit(() -> {
+            nGramIndex.remove(assignmentId, submission.getId());
+            lshIndex.remove(assignmentId, submission.getId());
+            corpusIndex.remove(submission.getId());
+        });
+    }
+
+    // The in-memory indexes follow the database: changed once the surrounding transaction
+    // commits, left alone if it rolls back, and changed right away outside of one
+    private void afterCommit(Runnable indexUpdate) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            indexUpdate.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                indexUpdate.run();
+            }
+        });
+    }
+
+    // Fingerprint a submission that has stored text but no current fingerprint. One still
+    // extracting is left to its extraction, which stores the fingerprint and folds it into its peers.
+    private Optional<TextFingerprint> backfillFingerprint(Submission submission) {
+        if (submission.getStatus() == SubmissionStatus.EXTRACTING) {
+            return Optional.empty();
+        }
+        return submissionTextService.findText(submission.getId())
+                .map(text -> saveFingerprint(submission, plagiarismEngine.createFingerprint(text)));
+    }
+
+    private boolean isCurrent(SubmissionFingerprint stored) {
+        return stored.getVersion() != null && stored.getVersion() == TextFingerprint.VERSION;
+    }
+
+    private TextFingerprint toFingerprint(SubmissionFingerprint stored) {
+        return TextFingerprint.decode(stored.getNgramHashes(), stored.getTermVector(), stored.getNorm(),
+                stored.getMinhashSignature());
+    }
+}
@@ -0,0 +1,175 @@
+package com.plagiarism.service;
+
+import com.plagiarism.dto.GradeDTO;
+import com.plagiarism.dto.GradeOutcomeDTO;
+import com.plagiarism.entity.SubmissionStatus;
+import com.plagiarism.repository.SubmissionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Applies the grades entered for a whole class at once. The grades are written with one
+ * batched JDBC update per chunk instead of a load and merge per submission. A grade only
+ * applies if the submission is still at the version it was entered against, and every
+ * grade gets its own outcome, so one stale or invalid row does not fail the others.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class GradingService {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_FEEDBACK_LENGTH = 1000;
+
+    private static final String GRADE_SQL = "update submissions set score = ?, feedback = ?, status = ?, " +
+            "version = version + 1, updated_at = ? where id = ? and version = ?";
+
+    private final SubmissionRepository submissionRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private record SubmissionState(long version, Integer maxScore) {
+    }
+
+    /**
+     * Grade the given submissions, returning one outcome per grade in request order
+     */
+    @Transactional
+    public List<GradeOutcomeDTO> gradeSubmissions(List<GradeDTO> grades) {
+        Map<Long, SubmissionState> states = findStates(grades.stream()
+                .map(GradeDTO::getSubmissionId)
+                .filter(Objects::nonNull)
+                .toList());
+
+        // Rejected grades get their outcome now; the rest are written below
+        GradeOutcomeDTO[] outcomes = new GradeOutcomeDTO[grades.size()];
+        List<Integer> applicable = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < grades.size(); i++) {
+            GradeDTO grade = grades.get(i);
+            SubmissionState state = states.get(grade.getSubmissionId());
+            if (grade.getSubmissionId() == null) {
+                outcomes[i] = outcome(grade, "INVALID", null, "submissionId is required");
+            } else if (!seen.add(grade.getSubmissionId())) {
+                outcomes[i] = outcome(grade, "INVALID", null, "Submission is graded twice in this request");
+            } else if (state == null) {
+                outcomes[i] = outcome(grade, "NOT_FOUND", null, "Submission not found");
+            } else if (grade.getVersion() == null) {
+                outcomes[i] = outcome(grade, "INVALID", state.version(), "version is required");
+            } else if (!isValidScore(grade.getScore(), state.maxScore())) {
+                outcomes[i] = outcome(grade, "INVALID", state.version(), state.maxScore() != null
+                        ? "score must be between 0 and " + state.maxScore()
+                        : "score must be at least 0");
+            } else if (grade.getFeedback() != null && grade.getFeedback().length() > MAX_FEEDBACK_LENGTH) {
+                outcomes[i] = outcome(grade, "INVALID", state.version(),
+                        "feedback is longer than " + MAX_FEEDBACK_LENGTH + " characters");
+            } else if (grade.getVersion() != state.version()) {
+                outcomes[i] = outcome(grade, "CONFLICT", state.version(), "Submission was changed since it was loaded");
+            } else {
+                applicable.add(i);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int[][] counts = jdbcTemplate.batchUpdate(GRADE_SQL, applicable, BATCH_SIZE, (ps, i) -> {
+            GradeDTO grade = grades.get(i);
+            ps.setInt(1, grade.getScore());
+            ps.setString(2, grade.getFeedback());
+            ps.setString(3, SubmissionStatus.GRADED.name());
+            ps.setTimestamp(4, Timestamp.valueOf(now));
+            ps.setLong(5, grade.getSubmissionId());
+            ps.setLong(6, grade.getVersion());
+        });
+
+        // A row the version check did not match was changed or deleted after it was read above.
+        // With rewriteBatchedStatements the driver may report SUCCESS_NO_INFO instead of a count;
+        // those rows are read back, still locked by this transaction, to see whether the grade landed.
+        int graded = 0;
+        List<Integer> raced = new ArrayList<>();
+        List<Integer> unknown = new ArrayList<>();
+        Iterator<Integer> indexes = applicable.iterator();
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                int i = indexes.next();
+                if (count > 0) {
+                    outcomes[i] = outcome(grades.get(i), "GRADED", grades.get(i).getVersion() + 1, null);
+                    graded++;
+                } else if (count == Statement.SUCCESS_NO_INFO) {
+                    unknown.add(i);
+                } else {
+                    raced.add(i);
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            Map<Long, Object[]> current = new HashMap<>();
+            for (Object[] row : submissionRepository.findGrades(unknown.stream()
+                    .map(i -> grades.get(i).getSubmissionId())
+                    .toList())) {
+                current.put((Long) row[0], row);
+            }
+            for (int i : unknown) {
+                if (isApplied(grades.get(i), current.get(grades.get(i).getSubmissionId()))) {
+                    outcomes[i] = outcome(grades.get(i), "GRADED", grades.get(i).getVersion() + 1, null);
+                    graded++;
+                } else {
+                    raced.add(i);
+                }
+            }
+        }
+        if (!raced.isEmpty()) {
+            Map<Long, SubmissionState> current = findStates(raced.stream()
+                    .map(i -> grades.get(i).getSubmissionId())
+                    .toList());
+            for (int i : raced) {
+                SubmissionState state = current.get(grades.get(i).getSubmissionId());
+                outcomes[i] = state == null
+                        ? outcome(grades.get(i), "NOT_FOUND", null, "Submission not found")
+                        : outcome(grades.get(i), "CONFLICT", state.version(), "Submission was changed since it was loaded");
+            }
+        }
+
+        log.info("Graded {} of {} submissions in {} batches", graded, grades.size(), counts.length);
+        return Arrays.asList(outcomes);
+    }
+
+    private Map<Long, SubmissionState> findStates(Collection<Long> submissionIds) {
+        Map<Long, SubmissionState> states = new HashMap<>();
+        if (submissionIds.isEmpty()) {
+            return states;
+        }
+        for (Object[] row : submissionRepository.findVersionsAndMaxScores(submissionIds)) {
+            states.put((Long) row[0], new SubmissionState((Long) row[1], (Integer) row[2]));
+        }
+        return states;
+    }
+
+    // The row is at the version this grade wrote and holds what it wrote
+    private boolean isApplied(GradeDTO grade, Object[] row) {
+        return row != null
+                && (Long) row[1] == grade.getVersion() + 1
+                && Objects.equals(row[2], grade.getScore())
+                && Objects.equals(row[3], grade.getFeedback())
+                && row[4] == SubmissionStatus.GRADED;
+    }
+
+    private boolean isValidScore(Integer score, Integer maxScore) {
+        return score != null && score >= 0 && (maxScore == null || score <= maxScore);
+    }
+
+    private GradeOutcomeDTO outcome(GradeDTO grade, String outcome, Long version, String message) {
+        return GradeOutcomeDTO.builder()
+                .submissionId(grade.getSubmissionId())
+                .outcome(outcome)
+                .version(version)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package com.plagiarism.service;
+
+import com.plagiarism.dto.SimilarityMatchDTO;
+import com.plagiarism.entity.Submission;
+import com.plagiarism.entity.SubmissionFingerprint;
+import com.plagiarism.repository.SubmissionFingerprintRepository;
+import com.plagiarism.repository.SubmissionRepository;
+import com.plagiarism.util.CorpusIndex;
+import com.plagiarism.util.TextFingerprint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Compares submissions against the submissions of every other assignment, e.g. earlier
+ * semesters, through the on-disk {@link CorpusIndex}. The index narrows the corpus down to
+ * the submissions sharing enough n-grams and scores those against the fingerprints stored
+ * in its mapped segments, so no fingerprint is loaded from the database per check.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class HistoricalCorpusService {
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final int LIVE_CHECK_BATCH_SIZE = 1000;
+    private static final int DEFAULT_MATCH_LIMIT = 10;
+    private static final int MAX_MATCH_LIMIT = 100;
+
+    private final CorpusIndex corpusIndex;
+    private final FingerprintService fingerprintService;
+    private final SubmissionFingerprintRepository fingerprintRepository;
+    private final SubmissionRepository submissionRepository;
+
+    // Corpus submissions sharing fewer n-grams than this are not scored
+    @Value("${plagiarism.corpus.min-shared-ngrams:10}")
+    private int minSharedNGrams;
+
+    // Corpus submissions scored per check, those sharing the most n-grams first
+    @Value("${plagiarism.corpus.max-candidates:100}")
+    private int maxCandidates;
+
+    /**
+     * Open the index and add the fingerprints stored since it was last written, in the background
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void openCorpus() {
+        if (!corpusIndex.isEnabled()) {
+            return;
+        }
+
+        try {
+            corpusIndex.open(this::findLiveSubmissions);
+        } catch (IOException e) {
+            log.error("Could not open the corpus index, historical matching is unavailable", e);
+            return;
+        }
+
+        Thread backfill = new Thread(this::backfill, "corpus-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * Best matches of a submission among the submissions of other assignments, highest score first
+     */
+    public List<SimilarityMatchDTO> findHistoricalMatches(Long submissionId, Integer limit) {
+        if (limit != null && (limit <= 0 || limit > MAX_MATCH_LIMIT)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_MATCH_LIMIT);
+        }
+        if (!corpusIndex.isEnabled()) {
+            throw new IllegalStateException("Historical corpus matching is disabled");
+        }
+
+        Submission submission = submissionRepository.findById(submissionId)
+                .orElseThrow(() -> new RuntimeException("Submission not found"));
+        return findHistoricalMatches(submission, fingerprintService.getFingerprint(submission),
+                limit != null ? limit : DEFAULT_MATCH_LIMIT);
+    }
+
+    public List<SimilarityMatchDTO> findHistoricalMatches(Submission submission, TextFingerprint fingerprint,
+                                                          int limit) {
+        if (!corpusIndex.isEnabled() || fingerprint.isEmpty()) {
+            return List.of();
+        }
+
+        Long assignmentId = submission.getAssignment().getId();
+        Map<Long, Double> scores = new HashMap<>();
+        for (CorpusIndex.Match match : corpusIndex.findSimilar(fingerprint, Math.max(minSharedNGrams, 1),
+                maxCandidates, id -> id != assignmentId)) {
+            scores.put(match.submissionId(), match.score());
+        }
+
+        // Submissions deleted since they were indexed have no details left and drop out here
+        List<SimilarityMatchDTO> matches = new ArrayList<>(submissionRepository.findMatchDetails(scores.keySet()));
+        matches.forEach(match -> match.setScore(scores.get(match.getPeerSubmissionId())));
+        matches.sort(Comparator.comparing(SimilarityMatchDTO::getScore).reversed());
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    private void backfill() {
+        // Diffed against the indexed ids rather than resumed from the highest one: submissions
+        // fingerprinted out of id order may have been lost from memory by a crash
+        long afterId = 0;
+        int added = 0;
+        List<Long> batch;
+        do {
+            batch = fingerprintRepository.findIdsAfter(afterId, TextFingerprint.VERSION,
+                    PageRequest.of(0, BACKFILL_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1);
+            List<Long> missing = batch.stream().filter(id -> !corpusIndex.contains(id)).toList();
+            for (SubmissionFingerprint stored : fingerprintRepository.findAllById(missing)) {
+                corpusIndex.add(stored.getSubmissionId(), stored.getAssignmentId(),
+                        TextFingerprint.decode(stored.getNgramHashes(), stored.getTermVector(),
+                                stored.getNorm(), stored.getMinhashSignature()));
+                added++;
+            }
+        } while (batch.size() == BACKFILL_BATCH_SIZE);
+
+        corpusIndex.markReady();
+        if (added > 0) {
+            log.info("Added {} stored fingerprints to the corpus index", added);
+        }
+    }
+
+    private Set<Long> findLiveSubmissions(Collection<Long> submissionIds) {
+        List<Long> ids = new ArrayList<>(submissionIds);
+        Set<Long> live = new HashSet<>();
+        for (int i = 0; i < ids.size(); i += LIVE_CHECK_BATCH_SIZE) {
+            live.addAll(fingerprintRepository.findExistingIds(
+                    ids.subList(i, Math.min(i + LIVE_CHECK_BATCH_SIZE, ids.size()))));
+        }
+        return live;
+    }
+}
@@ -0,0 +1,34 @@
+package com.plagiarism.service;
+
+import com.plagiarism.entity.SubmissionStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * In-memory state of a queued plagiarism check
+ */
+@Data
+public class PlagiarismCheckJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String jobId;
+    private final Long submissionId;
+    private final SubmissionStatus previousStatus;
+    private final LocalDateTime queuedAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile Long resultId;
+    private volatile String error;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,188 @@
+package com.plagiarism.service;
+
+import com.plagiarism.dto.PlagiarismJobDTO;
+import com.plagiarism.entity.PlagiarismResult;
+import com.plagiarism.entity.Submission;
+import com.plagiarism.entity.SubmissionStatus;
+import com.plagiarism.repository.SubmissionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs plagiarism checks on a bounded worker pool instead of the request thread.
+ * Requests for a submission that already has a queued or running check are
+ * coalesced into that job. Jobs live in memory; submissions still pending after a
+ * restart are queued again on startup.
+ */
+@Service
+@Slf4j
+public class PlagiarismCheckQueue {
+
+    private final PlagiarismService plagiarismService;
+    private final SubmissionRepository submissionRepository;
+    private final ThreadPoolExecutor executor;
+    private final long retentionMinutes;
+
+    private final Map<String, PlagiarismCheckJob> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, PlagiarismCheckJob> activeJobs = new ConcurrentHashMap<>();
+
+    public PlagiarismCheckQueue(PlagiarismService plagiarismService,
+                                SubmissionRepository submissionRepository,
+                                @Value("${plagiarism.jobs.workers:4}") int workers,
+                                @Value("${plagiarism.jobs.queue-capacity:1000}") int queueCapacity,
+                                @Value("${plagiarism.jobs.retention-minutes:60}") long retentionMinutes) {
+        this.plagiarismService = plagiarismService;
+        this.submissionRepository = submissionRepository;
+        this.retentionMinutes = retentionMinutes;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "plagiarism-check-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queue a plagiarism check, or return the pending job if one exists for the submission
+     *
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public PlagiarismCheckJob enqueue(Long submissionId) {
+        Submission submission = submissionRepository.findById(submissionId)
+                .orElseThrow(() -> new RuntimeException("Submission not found"));
+        if (submission.getStatus() == SubmissionStatus.EXTRACTING
+                || submission.getStatus() == SubmissionStatus.EXTRACTION_FAILED) {
+            throw new IllegalStateException("Submission text has not been extracted yet");
+        }
+        // A submission can be left pending by a restart before its check was queued again
+        return submit(submissionId, submission.getStatus() == SubmissionStatus.PLAGIARISM_CHECK_PENDING
+                ? statusBeforeCheck(submission)
+                : submission.getStatus());
+    }
+
+    /**
+     * Queue the checks that were pending when the application last stopped; their jobs lived in memory only
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPending() {
+        List<Long> submissionIds = submissionRepository.findIdsByStatus(SubmissionStatus.PLAGIARISM_CHECK_PENDING);
+        if (submissionIds.isEmpty()) {
+            return;
+        }
+
+        log.info("Resuming plagiarism checks for {} submissions", submissionIds.size());
+        for (Submission submission : submissionRepository.findAllById(submissionIds)) {
+            try {
+                submit(submission.getId(), statusBeforeCheck(submission));
+            } catch (RejectedExecutionException e) {
+                log.warn("Plagiarism check queue is full, submission {} was not checked", submission.getId());
+            }
+        }
+    }
+
+    private PlagiarismCheckJob submit(Long submissionId, SubmissionStatus previousStatus) {
+        purgeFinishedJobs();
+
+        PlagiarismCheckJob newJob = new PlagiarismCheckJob(
+                UUID.randomUUID().toString(), submissionId, previousStatus, LocalDateTime.now());
+        PlagiarismCheckJob job = activeJobs.compute(submissionId,
+                (id, existing) -> existing != null && !existing.isFinished() ? existing : newJob);
+        if (job != newJob) {
+            log.debug("Coalesced plagiarism check for submission {} into job {}", submissionId, job.getJobId());
+            return job;
+        }
+
+        jobs.put(job.getJobId(), job);
+        submissionRepository.updateStatus(List.of(submissionId), SubmissionStatus.PLAGIARISM_CHECK_PENDING,
+                EnumSet.allOf(SubmissionStatus.class));
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            fail(job, "Plagiarism check queue is full");
+            throw e;
+        }
+
+        log.info("Queued plagiarism check {} for submission {}", job.getJobId(), submissionId);
+        return job;
+    }
+
+    public Optional<PlagiarismCheckJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public PlagiarismJobDTO convertToDTO(PlagiarismCheckJob job) {
+        return PlagiarismJobDTO.builder()
+                .jobId(job.getJobId())
+                .submissionId(job.getSubmissionId())
+                .status(job.getStatus().toString())
+                .resultId(job.getResultId())
+                .error(job.getError())
+                .queuedAt(job.getQueuedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(PlagiarismCheckJob job) {
+        job.setStartedAt(LocalDateTime.now());
+        job.setStatus(PlagiarismCheckJob.Status.RUNNING);
+        try {
+            PlagiarismResult result = plagiarismService.checkPlagiarism(job.getSubmissionId());
+            job.setResultId(result.getId());
+            job.setFinishedAt(LocalDateTime.now());
+            job.setStatus(PlagiarismCheckJob.Status.COMPLETED);
+        } catch (Exception e) {
+            log.error("Plagiarism check {} failed for submission {}", job.getJobId(), job.getSubmissionId(), e);
+            fail(job, e.getMessage());
+        } finally {
+            activeJobs.remove(job.getSubmissionId(), job);
+        }
+    }
+
+    private void fail(PlagiarismCheckJob job, String error) {
+        job.setError(error);
+        job.setFinishedAt(LocalDateTime.now());
+        job.setStatus(PlagiarismCheckJob.Status.FAILED);
+        activeJobs.remove(job.getSubmissionId(), job);
+
+        // Do not leave the submission looking queued forever
+        submissionRepository.updateStatus(List.of(job.getSubmissionId()), job.getPreviousStatus(),
+                List.of(SubmissionStatus.PLAGIARISM_CHECK_PENDING));
+    }
+
+    // The status a pending submission had before its check was requested is not stored, so it is derived
+    private SubmissionStatus statusBeforeCheck(Submission submission) {
+        if (submission.getScore() != null) {
+            return SubmissionStatus.GRADED;
+        }
+        return submission.getPlagiarismResult() != null
+                ? SubmissionStatus.PLAGIARISM_CHECK_COMPLETE
+                : SubmissionStatus.SUBMITTED;
+    }
+
+    private void purgeFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+}
@@ -0,0 +1,177 @@
+package com.plagiarism.service;
+
+import com.plagiarism.dto.PlagiarismMatrixReportDTO;
+import com.plagiarism.util.AssignmentLocks;
+import com.plagiarism.util.PlagiarismDetectionEngine;
+import com.plagiarism.util.TextFingerprint;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks every submission of an assignment at once. Each pair is scored a single
+ * time by computing the upper triangle of the similarity matrix in parallel, and
+ * the per-submission aggregates are then written in one transaction, followed by
+ * the individual pair scores. The whole check holds the assignment's lock, so uploads
+ * processed meanwhile are folded into the new results instead of being overwritten.
+ */
+@Service
+@Slf4j
+public class PlagiarismMatrixService {
+
+    // Pairs scored by one fork/join task before it stops splitting
+    private static final int PAIRS_PER_TASK = 4096;
+
+    private final FingerprintService fingerprintService;
+    private final PlagiarismService plagiarismService;
+    private final SubmissionSimilarityService submissionSimilarityService;
+    private final AssignmentService assignmentService;
+    private final PlagiarismDetectionEngine plagiarismEngine;
+    private final AssignmentLocks assignmentLocks;
+    private final ForkJoinPool pool;
+    private final int maxSubmissions;
+
+    public PlagiarismMatrixService(FingerprintService fingerprintService,
+                                   PlagiarismService plagiarismService,
+                                   SubmissionSimilarityService submissionSimilarityService,
+                                   AssignmentService assignmentService,
+                                   PlagiarismDetectionEngine plagiarismEngine,
+                                   AssignmentLocks assignmentLocks,
+                                   @Value("${plagiarism.matrix.parallelism:0}") int parallelism,
+                                   @Value("${plagiarism.matrix.max-submissions:5000}") int maxSubmissions) {
+        this.fingerprintService = fingerprintService;
+        this.plagiarismService = plagiarismService;
+        this.submissionSimilarityService = submissionSimilarityService;
+        this.assignmentService = assignmentService;
+        this.plagiarismEngine = plagiarismEngine;
+        this.assignmentLocks = assignmentLocks;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxSubmissions = maxSubmissions;
+    }
+
+    public PlagiarismMatrixReportDTO checkAssignment(Long assignmentId) {
+        assignmentService.getAssignmentById(assignmentId);
+        return assignmentLocks.withLock(assignmentId, () -> computeMatrix(assignmentId));
+    }
+
+    private PlagiarismMatrixReportDTO computeMatrix(Long assignmentId) {
+        long start = System.nanoTime();
+
+        // Every submission was tokenized once at upload; only the fingerprints are loaded here
+        Map<Long, TextFingerprint> fingerprints = fingerprintService.getFingerprintsForAssignment(assignmentId);
+        int n = fingerprints.size();
+        Long[] submissionIds = fingerprints.keySet().toArray(new Long[0]);
+        TextFingerprint[] fingerprintArray = fingerprints.values().toArray(new TextFingerprint[0]);
+
+        // The whole triangle is held in one array, so its size is capped; counted in long to avoid overflow
+        long pairs = (long) n * (n - 1) / 2;
+        if (n > maxSubmissions || pairs > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Assignment has " + n + " submissions, the matrix check supports at most "
+                    + maxSubmissions);
+        }
+
+        long comparisonStart = System.nanoTime();
+        double[] scores = new double[(int) pairs];
+        if (n > 1) {
+            pool.invoke(new UpperTriangleTask(fingerprintArray, scores, 0, n - 1));
+        }
+        long comparisonNanos = System.nanoTime() - comparisonStart;
+
+        // Fold the triangle into per-submission aggregates
+        double[] scoreSums = new double[n];
+        double[] maxScores = new double[n];
+        int[] matchCounts = new int[n];
+        int index = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double score = scores[index++];
+                scoreSums[i] += score;
+                scoreSums[j] += score;
+                maxScores[i] = Math.max(maxScores[i], score);
+                maxScores[j] = Math.max(maxScores[j], score);
+                if (score > 0) {
+                    matchCounts[i]++;
+                    matchCounts[j]++;
+                }
+            }
+        }
+
+        Map<Long, Map<String, Object>> similarityResults = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            similarityResults.put(submissionIds[i],
+                    plagiarismEngine.buildSimilarityReport(scoreSums[i], maxScores[i], matchCounts[i], n - 1));
+        }
+        plagiarismService.saveAssignmentResults(similarityResults);
+        submissionSimilarityService.replaceAssignmentScores(assignmentId, submissionIds, scores);
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        long pairCount = scores.length;
+        double pairsPerSecond = comparisonNanos == 0 ? 0.0
+                : Math.round(pairCount * 1_000_000_000.0 / comparisonNanos * 100.0) / 100.0;
+
+        log.info("Plagiarism matrix for assignment {}: {} submissions, {} pairs in {} ms ({} pairs/s)",
+                assignmentId, n, pairCount, elapsedMillis, pairsPerSecond);
+
+        return PlagiarismMatrixReportDTO.builder()
+                .assignmentId(assignmentId)
+                .submissionCount(n)
+                .pairCount(pairCount)
+                .elapsedMillis(elapsedMillis)
+                .comparisonMillis(comparisonNanos / 1_000_000)
+                .pairsPerSecond(pairsPerSecond)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Scores the rows [fromRow, toRow) of the upper triangle, splitting while
+     * the range holds more than {@link #PAIRS_PER_TASK} pairs
+     */
+    private class UpperTriangleTask extends RecursiveAction {
+        private final TextFingerprint[] fingerprints;
+        private final double[] scores;
+        private final int fromRow;
+        private final int toRow;
+
+        UpperTriangleTask(TextFingerprint[] fingerprints, double[] scores, int fromRow, int toRow) {
+            this.fingerprints = fingerprints;
+            this.scores = scores;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            int n = fingerprints.length;
+            long pairs = rowOffset(toRow, n) - rowOffset(fromRow, n);
+            if (pairs <= PAIRS_PER_TASK || toRow - fromRow == 1) {
+                for (int i = fromRow; i < toRow; i++) {
+                    int index = (int) rowOffset(i, n);
+                    for (int j = i + 1; j < n; j++) {
+                        scores[index++] = plagiarismEngine.calculateSimilarity(fingerprints[i], fingerprints[j]);
+                    }
+                }
+                return;
+            }
+
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new UpperTriangleTask(fingerprints, scores, fromRow, middle),
+                    new UpperTriangleTask(fingerprints, scores, middle, toRow));
+        }
+
+        // Index of the first pair (row, row + 1) in the flattened upper triangle
+        private long rowOffset(int row, int n) {
+            return (long) row * (2L * n - row - 1) / 2;
+        }
+    }
+}
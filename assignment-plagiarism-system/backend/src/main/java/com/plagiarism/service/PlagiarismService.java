@@ -6,10 +6,17 @@ import com.plagiarism.entity.Submission;
 import com.plagiarism.entity.SubmissionStatus;
 import com.plagiarism.repository.PlagiarismResultRepository;
 import com.plagiarism.repository.SubmissionRepository;
+import com.plagiarism.util.AssignmentLocks;
 import com.plagiarism.util.PlagiarismDetectionEngine;
+import com.plagiarism.util.TextFingerprint;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -22,65 +29,272 @@ public class PlagiarismService {
     private final PlagiarismResultRepository plagiarismResultRepository;
     private final SubmissionRepository submissionRepository;
     private final PlagiarismDetectionEngine plagiarismEngine;
+    private final FingerprintService fingerprintService;
+    private final SubmissionTextService submissionTextService;
+    private final SubmissionSimilarityService submissionSimilarityService;
+    private final HistoricalCorpusService historicalCorpusService;
+    private final AssignmentLocks assignmentLocks;
+    private final TransactionTemplate transactionTemplate;
 
+    // Score each upload against its peers and fold it into their stored results
+    @Value("${plagiarism.incremental.enabled:false}")
+    private boolean incrementalEnabled;
+
+    // Most similar peers searched for shared runs when highlighting a submission
+    @Value("${plagiarism.highlight.top-k:3}")
+    private int highlightTopK;
+
+    // Shortest run of shared tokens that is highlighted
+    @Value("${plagiarism.highlight.min-match-tokens:" + PlagiarismDetectionEngine.DEFAULT_MIN_MATCH_TOKENS + "}")
+    private int highlightMinMatchTokens;
+
+    /**
+     * Score a submission against all its peers and store its result. Runs under the assignment's
+     * lock, so it neither overwrites nor misses an incremental update made while it runs.
+     */
     public PlagiarismResult checkPlagiarism(Long submissionId) {
+        Long assignmentId = submissionRepository.findById(submissionId)
+                .orElseThrow(() -> new RuntimeException("Submission not found"))
+                .getAssignment().getId();
+        return assignmentLocks.withLock(assignmentId, () -> runCheck(submissionId));
+    }
+
+    private PlagiarismResult runCheck(Long submissionId) {
+        // Loaded again under the lock, so a result created by an incremental update meanwhile is reused
         Submission submission = submissionRepository.findById(submissionId)
                 .orElseThrow(() -> new RuntimeException("Submission not found"));
 
-        if (submission.getExtractedText() == null || submission.getExtractedText().isEmpty()) {
+        String extractedText = submissionTextService.getText(submission);
+        if (extractedText.isEmpty()) {
             throw new RuntimeException("No text extracted from submission");
         }
 
-        submission.setStatus(SubmissionStatus.PLAGIARISM_CHECK_PENDING);
-        submissionRepository.save(submission);
-
-        // Get all other submissions for the same assignment
-        List<Submission> otherSubmissions = submissionRepository
-                .findByAssignmentId(submission.getAssignment().getId()).stream()
-                .filter(s -> !s.getId().equals(submissionId) && s.getExtractedText() != null)
-                .toList();
+        // Score only the peers sharing n-grams with this submission; the rest count as zero
+        TextFingerprint fingerprint = fingerprintService.getFingerprint(submission);
+        Map<Long, Double> scores = scoreAgainstPeers(submission, fingerprint);
+        int totalPeers = (int) Math.max(
+                fingerprintService.countFingerprints(submission.getAssignment().getId()) - 1, scores.size());
+        Map<String, Object> similarityResult = buildSimilarityReport(scores, totalPeers);
+        submissionSimilarityService.replaceScores(submission.getAssignment().getId(), submissionId, scores);
 
-        // Extract texts for comparison
-        List<String> comparisonTexts = new ArrayList<>();
-        for (Submission other : otherSubmissions) {
-            comparisonTexts.add(other.getExtractedText());
-        }
+        // Closest submission from any other assignment, e.g. an earlier semester
+        historicalCorpusService.findHistoricalMatches(submission, fingerprint, 1).stream().findFirst()
+                .ifPresent(match -> {
+                    similarityResult.put("historicalMaxScore", Math.round(match.getScore() * 100.0) / 100.0);
+                    similarityResult.put("historicalSubmissionId", match.getPeerSubmissionId());
+                });
 
-        // Calculate detailed similarity
-        Map<String, Object> similarityResult = plagiarismEngine.calculateDetailedSimilarity(
-                submission.getExtractedText(),
-                comparisonTexts
-        );
-
-        // Highlight similar sections
-        String highlightedText = "";
-        if (!comparisonTexts.isEmpty()) {
-            highlightedText = plagiarismEngine.highlightSimilarSections(
-                    submission.getExtractedText(),
-                    comparisonTexts.get(0)
-            );
-        }
+        // Highlight the runs shared with the most similar peers, attributed to the peer they came from
+        Map<Long, String> peerTexts = new LinkedHashMap<>();
+        scores.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(highlightTopK)
+                .forEach(entry -> submissionTextService.findText(entry.getKey())
+                        .ifPresent(text -> peerTexts.put(entry.getKey(), text)));
+        String highlightedText = plagiarismEngine.highlightSimilarSections(
+                extractedText, peerTexts, highlightMinMatchTokens);
 
-        // Create plagiarism result
-        PlagiarismResult result = PlagiarismResult.builder()
-                .submission(submission)
-                .similarityScore((Double) similarityResult.get("similarityScore"))
-                .totalComparisons((Integer) similarityResult.get("totalComparisons"))
-                .detailedReport(generateDetailedReport(similarityResult))
-                .highlightedText(highlightedText)
-                .checkedAt(LocalDateTime.now())
-                .build();
+        // Create or refresh the plagiarism result
+        PlagiarismResult result = submission.getPlagiarismResult() != null
+                ? submission.getPlagiarismResult()
+                : PlagiarismResult.builder().submission(submission).build();
+        applySimilarityResult(result, similarityResult);
+        result.setHighlightedText(highlightedText);
+        result.setStale(false);
 
         plagiarismResultRepository.save(result);
 
+        // Only the status is written, so a grade entered while the check ran is neither lost nor a version conflict
         submission.setPlagiarismResult(result);
-        submission.setStatus(SubmissionStatus.PLAGIARISM_CHECK_COMPLETE);
-        submissionRepository.save(submission);
+        submissionRepository.updateStatus(List.of(submissionId), SubmissionStatus.PLAGIARISM_CHECK_COMPLETE,
+                EnumSet.allOf(SubmissionStatus.class));
 
         log.info("Plagiarism check completed for submission: {}", submissionId);
         return result;
     }
 
+    /**
+     * Store the results of an assignment-wide check in a single transaction,
+     * keyed by submission id. The caller holds the assignment's lock.
+     */
+    @Transactional
+    public void saveAssignmentResults(Map<Long, Map<String, Object>> similarityResults) {
+        Map<Long, PlagiarismResult> existing = new HashMap<>();
+        for (PlagiarismResult result : plagiarismResultRepository.findBySubmissionIdIn(similarityResults.keySet())) {
+            existing.put(result.getSubmission().getId(), result);
+        }
+
+        List<PlagiarismResult> results = new ArrayList<>();
+        similarityResults.forEach((submissionId, similarityResult) -> {
+            PlagiarismResult result = existing.computeIfAbsent(submissionId, id -> PlagiarismResult.builder()
+                    .submission(submissionRepository.getReferenceById(id))
+                    .highlightedText("")
+                    .build());
+            applySimilarityResult(result, similarityResult);
+            result.setStale(false);
+            results.add(result);
+        });
+        plagiarismResultRepository.saveAll(results);
+
+        submissionRepository.updateStatus(similarityResults.keySet(), SubmissionStatus.PLAGIARISM_CHECK_COMPLETE,
+                List.of(SubmissionStatus.SUBMITTED, SubmissionStatus.UNDER_REVIEW,
+                        SubmissionStatus.PLAGIARISM_CHECK_PENDING));
+    }
+
+    /**
+     * Store the text and fingerprint of a freshly extracted submission and move it to SUBMITTED.
+     * Runs in one transaction under the assignment's lock, so a replacement can neither delete
+     * the submission halfway through nor leave its text or fingerprint behind.
+     * <p>
+     * With incremental checks enabled, the submission is also scored against the existing
+     * fingerprints of its assignment. Its result is stored and the new pair scores are folded
+     * into the results of the earlier submissions, at one comparison per candidate peer
+     * instead of re-checking the whole class. The fingerprint and the fold commit together,
+     * so each pair is counted exactly once however many extractions run at a time. If the
+     * fold fails it is rolled back as a whole; the fingerprint is then stored without it and
+     * the assignment's results are flagged as stale until the next full check.
+     */
+    public void addExtractedSubmission(Submission newcomer, String text, TextFingerprint fingerprint) {
+        Long assignmentId = newcomer.getAssignment().getId();
+        assignmentLocks.withLock(assignmentId, () -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (markSubmitted(newcomer, text, fingerprint) && incrementalEnabled) {
+                        foldIntoPeerResults(newcomer, fingerprint);
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (!incrementalEnabled) {
+                    throw e;
+                }
+                log.error("Incremental plagiarism update failed for submission {}, "
+                        + "flagging the results of assignment {} for a full check", newcomer.getId(), assignmentId, e);
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (markSubmitted(newcomer, text, fingerprint)) {
+                        plagiarismResultRepository.markStale(assignmentId);
+                    }
+                });
+            }
+        });
+    }
+
+    // Skipped if a replacement deleted the submission during extraction; replacements delete under the same lock
+    private boolean markSubmitted(Submission submission, String text, TextFingerprint fingerprint) {
+        if (!submissionRepository.existsById(submission.getId())) {
+            log.info("Submission {} was replaced during extraction", submission.getId());
+            return false;
+        }
+        submissionTextService.saveText(submission.getId(), text);
+        fingerprintService.saveFingerprint(submission, fingerprint);
+        submissionRepository.updateStatus(List.of(submission.getId()), SubmissionStatus.SUBMITTED,
+                List.of(SubmissionStatus.EXTRACTING));
+        return true;
+    }
+
+    private void foldIntoPeerResults(Submission newcomer, TextFingerprint fingerprint) {
+        Map<Long, Double> scores = scoreAgainstPeers(newcomer, fingerprint);
+        int totalPeers = (int) Math.max(
+                fingerprintService.countFingerprints(newcomer.getAssignment().getId()) - 1, scores.size());
+
+        PlagiarismResult newcomerResult = PlagiarismResult.builder()
+                .submission(newcomer)
+                .highlightedText("")
+                .build();
+        applySimilarityResult(newcomerResult, buildSimilarityReport(scores, totalPeers));
+        submissionSimilarityService.replaceScores(newcomer.getAssignment().getId(), newcomer.getId(), scores);
+
+        List<PlagiarismResult> updated = updatePeerAggregates(newcomer, scores, 1);
+        updated.add(newcomerResult);
+        plagiarismResultRepository.saveAll(updated);
+
+        log.info("Incrementally scored submission {} against {} peers, updated {} results",
+                newcomer.getId(), scores.size(), updated.size() - 1);
+    }
+
+    /**
+     * Remove a submission that is about to be replaced from the aggregates of its peers' results.
+     * Runs under the assignment's lock; the caller keeps holding it until the submission's
+     * fingerprint is deleted, so no newcomer scores it in between.
+     */
+    public void retractFromPeerResults(Submission submission) {
+        if (!incrementalEnabled) {
+            return;
+        }
+        assignmentLocks.withLock(submission.getAssignment().getId(), () -> transactionTemplate.executeWithoutResult(
+                status -> {
+                    TextFingerprint fingerprint = fingerprintService.getFingerprint(submission);
+                    Map<Long, Double> scores = scoreAgainstPeers(submission, fingerprint);
+                    plagiarismResultRepository.saveAll(updatePeerAggregates(submission, scores, -1));
+                }));
+    }
+
+    private Map<Long, Double> scoreAgainstPeers(Submission submission, TextFingerprint fingerprint) {
+        Map<Long, Double> scores = new HashMap<>();
+        fingerprintService.getCandidateFingerprints(submission, fingerprint).forEach((peerId, peer) ->
+                scores.put(peerId, plagiarismEngine.calculateSimilarity(fingerprint, peer)));
+        return scores;
+    }
+
+    private Map<String, Object> buildSimilarityReport(Map<Long, Double> scores, int totalPeers) {
+        double scoreSum = 0;
+        double maxScore = 0;
+        int matchCount = 0;
+        for (double score : scores.values()) {
+            scoreSum += score;
+            maxScore = Math.max(maxScore, score);
+            if (score > 0) {
+                matchCount++;
+            }
+        }
+        return plagiarismEngine.buildSimilarityReport(scoreSum, maxScore, matchCount, totalPeers);
+    }
+
+    /**
+     * Add ({@code direction} 1) or remove ({@code direction} -1) one peer's scores from the stored
+     * results of the other submissions in the assignment. Peers that were not scored count as zero.
+     * On removal the maximum is rebuilt from the remaining stored pair scores, read under the same
+     * lock; a result whose pairs predate the similarity table keeps its maximum as an upper bound
+     * until the next full check.
+     */
+    private List<PlagiarismResult> updatePeerAggregates(Submission changed, Map<Long, Double> scores, int direction) {
+        Map<Long, Double> remainingMaxScores = direction < 0
+                ? submissionSimilarityService.getMaxScores(changed.getAssignment().getId(), changed.getId())
+                : Map.of();
+
+        List<PlagiarismResult> updated = new ArrayList<>();
+        for (PlagiarismResult result : plagiarismResultRepository.findBySubmissionAssignmentId(
+                changed.getAssignment().getId())) {
+            Long peerId = result.getSubmission().getId();
+            if (peerId.equals(changed.getId())) {
+                continue;
+            }
+            if (result.getScoreSum() == null || result.getMaxScore() == null || result.getMatchedComparisons() == null) {
+                log.debug("Result {} predates incremental aggregates, leaving it for the next full check",
+                        result.getId());
+                continue;
+            }
+
+            double score = scores.getOrDefault(peerId, 0.0);
+            double scoreSum = Math.max(0, result.getScoreSum() + direction * score);
+            int totalComparisons = Math.max(0, result.getTotalComparisons() + direction);
+            int matchCount = Math.max(0, result.getMatchedComparisons() + (score > 0 ? direction : 0));
+            double maxScore;
+            if (direction > 0) {
+                maxScore = Math.max(result.getMaxScore(), score);
+            } else if (matchCount == 0) {
+                maxScore = 0;
+            } else {
+                maxScore = remainingMaxScores.getOrDefault(peerId, result.getMaxScore());
+            }
+
+            applySimilarityResult(result,
+                    plagiarismEngine.buildSimilarityReport(scoreSum, maxScore, matchCount, totalComparisons));
+            updated.add(result);
+        }
+        return updated;
+    }
+
     public PlagiarismResult getPlagiarismResult(Long submissionId) {
         Submission submission = submissionRepository.findById(submissionId)
                 .orElseThrow(() -> new RuntimeException("Submission not found"));
@@ -90,14 +304,29 @@ public class PlagiarismService {
     }
 
     public List<PlagiarismResultDTO> getAllPlagiarismResultsForAssignment(Long assignmentId) {
-        List<Submission> submissions = submissionRepository.findByAssignmentId(assignmentId);
-        return submissions.stream()
-                .map(s -> plagiarismResultRepository.findBySubmission(s))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .map(this::convertResultToDTO)
-                .sorted(Comparator.comparingDouble(PlagiarismResultDTO::getSimilarityScore).reversed())
-                .toList();
+        return getPlagiarismResultsForAssignment(assignmentId, null, null, null, null);
+    }
+
+    /**
+     * Results of an assignment sorted by similarity score (highest first), filtered and
+     * paginated in the database. The next page starts after the score and id of the last
+     * result returned.
+     */
+    public List<PlagiarismResultDTO> getPlagiarismResultsForAssignment(Long assignmentId, Double minScore,
+                                                                       Double afterScore, Long afterId,
+                                                                       Integer limit) {
+        if ((afterScore == null) != (afterId == null)) {
+            throw new IllegalArgumentException("afterScore and afterId must be given together");
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        return plagiarismResultRepository.findReportPage(assignmentId,
+                minScore != null ? minScore : 0.0,
+                afterScore,
+                afterId,
+                limit != null ? PageRequest.of(0, limit) : Pageable.unpaged());
     }
 
     public PlagiarismResultDTO convertResultToDTO(PlagiarismResult result) {
@@ -107,9 +336,20 @@ public class PlagiarismService {
                 .totalComparisons(result.getTotalComparisons())
                 .detailedReport(result.getDetailedReport())
                 .checkedAt(result.getCheckedAt())
+                .stale(Boolean.TRUE.equals(result.getStale()))
                 .build();
     }
 
+    private void applySimilarityResult(PlagiarismResult result, Map<String, Object> similarityResult) {
+        result.setSimilarityScore((Double) similarityResult.get("similarityScore"));
+        result.setTotalComparisons((Integer) similarityResult.get("totalComparisons"));
+        result.setMaxScore((Double) similarityResult.get("maxScore"));
+        result.setScoreSum((Double) similarityResult.get("scoreSum"));
+        result.setMatchedComparisons((Integer) similarityResult.get("matchedComparisons"));
+        result.setDetailedReport(generateDetailedReport(similarityResult));
+        result.setCheckedAt(LocalDateTime.now());
+    }
+
     private String generateDetailedReport(Map<String, Object> similarityResult) {
         StringBuilder report = new StringBuilder();
         report.append("=== Plagiarism Detection Report ===\n");
@@ -118,6 +358,10 @@ public class PlagiarismService {
         report.append(String.format("Maximum Score: %.2f%%\n", similarityResult.get("maxScore")));
         report.append(String.format("Total Comparisons: %d\n", similarityResult.get("totalComparisons")));
         report.append(String.format("Matched Comparisons: %d\n", similarityResult.get("matchedComparisons")));
+        if (similarityResult.containsKey("historicalMaxScore")) {
+            report.append(String.format("Closest Earlier Submission: %.2f%% (submission %d)\n",
+                    similarityResult.get("historicalMaxScore"), similarityResult.get("historicalSubmissionId")));
+        }
 
         Double score = (Double) similarityResult.get("similarityScore");
         if (score >= 80) {
@@ -0,0 +1,340 @@
+package com.plagiarism.service;
+
+import com.plagiarism.dto.SubmissionImportReportDTO;
+import com.plagiarism.entity.Assignment;
+import com.plagiarism.entity.Submission;
+import com.plagiarism.entity.SubmissionStatus;
+import com.plagiarism.entity.User;
+import com.plagiarism.entity.UserRole;
+import com.plagiarism.repository.SubmissionRepository;
+import com.plagiarism.repository.UserRepository;
+import com.plagiarism.util.AssignmentLocks;
+import com.plagiarism.util.ContentStore;
+import com.plagiarism.util.FileTextExtractor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.CountingInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports the submissions of a whole assignment from one ZIP, e.g. when moving from another
+ * LMS. The archive is read as a stream: each supported entry goes straight into the
+ * {@link ContentStore}, and a {@code manifest.csv} entry maps entry paths to student emails.
+ * Stored files that end up imported by no submission are deleted again.
+ * The submissions are inserted in a single transaction, which Hibernate sends as JDBC
+ * batches and which also deletes the submissions they replace, and their text is then
+ * extracted in parallel by the {@link TextExtractionQueue}.
+ */
+@Service
+@Slf4j
+public class SubmissionImportService {
+
+    public static final String MANIFEST_NAME = "manifest.csv";
+
+    private final AssignmentService assignmentService;
+    private final SubmissionService submissionService;
+    private final SubmissionRepository submissionRepository;
+    private final UserRepository userRepository;
+    private final FileTextExtractor fileTextExtractor;
+    private final ContentStore contentStore;
+    private final TextExtractionQueue textExtractionQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final AssignmentLocks assignmentLocks;
+    private final int maxEntries;
+    private final DataSize maxBytes;
+
+    public SubmissionImportService(AssignmentService assignmentService,
+                                   SubmissionService submissionService,
+                                   SubmissionRepository submissionRepository,
+                                   UserRepository userRepository,
+                                   FileTextExtractor fileTextExtractor,
+                                   ContentStore contentStore,
+                                   TextExtractionQueue textExtractionQueue,
+                                   PlatformTransactionManager transactionManager,
+                                   AssignmentLocks assignmentLocks,
+                                   @Value("${submission.import.max-entries:5000}") int maxEntries,
+                                   @Value("${submission.import.max-bytes:1GB}") DataSize maxBytes) {
+        this.assignmentService = assignmentService;
+        this.submissionService = submissionService;
+        this.submissionRepository = submissionRepository;
+        this.userRepository = userRepository;
+        this.fileTextExtractor = fileTextExtractor;
+        this.contentStore = contentStore;
+        this.textExtractionQueue = textExtractionQueue;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.assignmentLocks = assignmentLocks;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    private record ImportRow(String entryName, User student, ContentStore.StoredContent content) {
+    }
+
+    private record Imported(List<Long> submissionIds, int replacedCount) {
+    }
+
+    /**
+     * Import every file listed in the ZIP's manifest as the submission of its student,
+     * replacing the student's existing submission. Entries and manifest lines that cannot
+     * be imported are reported as skipped instead of failing the whole import.
+     */
+    public SubmissionImportReportDTO importZip(Long assignmentId, InputStream in) {
+        long start = System.nanoTime();
+        Assignment assignment = assignmentService.getAssignmentById(assignmentId);
+        List<String> skipped = new ArrayList<>();
+        Map<String, ContentStore.StoredContent> stored = new LinkedHashMap<>();
+
+        List<ImportRow> rows;
+        Imported imported;
+        try {
+            Map<String, String> manifest = readZip(in, stored, skipped);
+            for (String name : stored.keySet()) {
+                if (!manifest.containsKey(name)) {
+                    skipped.add(name + ": not in " + MANIFEST_NAME);
+                }
+            }
+            rows = matchStudents(manifest, stored, skipped);
+            imported = replaceSubmissions(assignment, rows);
+        } catch (RuntimeException e) {
+            deleteUnusedBlobs(stored.values(), List.of());
+            throw e;
+        }
+        deleteUnusedBlobs(stored.values(), rows);
+        List<Long> submissionIds = imported.submissionIds();
+        submissionIds.forEach(textExtractionQueue::enqueue);
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Imported {} submissions into assignment {} in {} ms, skipped {}",
+                submissionIds.size(), assignmentId, elapsedMillis, skipped.size());
+        return SubmissionImportReportDTO.builder()
+                .assignmentId(assignmentId)
+                .importedCount(submissionIds.size())
+                .replacedCount(imported.replacedCount())
+                .submissionIds(submissionIds)
+                .skipped(skipped)
+                .elapsedMillis(elapsedMillis)
+                .build();
+    }
+
+    /**
+     * Store every supported entry of the ZIP in {@code stored}, keyed by its path, before the
+     * manifest is known; whatever the manifest does not use is deleted again afterwards
+     *
+     * @return the manifest
+     */
+    private Map<String, String> readZip(InputStream in, Map<String, ContentStore.StoredContent> stored,
+                                        List<String> skipped) {
+        Map<String, String> manifest = null;
+        try (ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8)) {
+            // Every entry is read through this, so the limit holds however well the ZIP compresses
+            LimitedInputStream unzipped = new LimitedInputStream(zip, maxBytes);
+            int entries = 0;
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (name.equals(MANIFEST_NAME)) {
+                    manifest = readManifest(unzipped, skipped);
+                    continue;
+                }
+                if (++entries > maxEntries) {
+                    throw new IllegalArgumentException("ZIP holds more than " + maxEntries + " files");
+                }
+
+                if (!fileTextExtractor.isSupported(name)) {
+                    skipped.add(name + ": unsupported file format");
+                } else if (manifest != null && !manifest.containsKey(name)) {
+                    skipped.add(name + ": not in " + MANIFEST_NAME);
+                } else {
+                    try {
+                        stored.put(name, contentStore.store(unzipped, fileNameOf(name)));
+                    } catch (IllegalArgumentException e) {
+                        if (unzipped.isExceeded()) {
+                            throw e;
+                        }
+                        skipped.add(name + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read ZIP", e);
+        }
+        if (manifest == null) {
+            throw new IllegalArgumentException("ZIP has no " + MANIFEST_NAME);
+        }
+        return manifest;
+    }
+
+    /**
+     * Delete the blobs this import wrote that no submission points at, e.g. the files of unknown
+     * students or of a failed import. Blobs another submission holds the same bytes in are kept.
+     */
+    private void deleteUnusedBlobs(Collection<ContentStore.StoredContent> stored, List<ImportRow> imported) {
+        Set<String> usedHashes = new HashSet<>();
+        imported.forEach(row -> usedHashes.add(row.content().contentHash()));
+        List<ContentStore.StoredContent> unused = stored.stream()
+                .filter(content -> content.created() && !usedHashes.contains(content.contentHash()))
+                .toList();
+        if (unused.isEmpty()) {
+            return;
+        }
+
+        Set<String> referenced = new HashSet<>(submissionRepository.findContentHashesIn(
+                unused.stream().map(ContentStore.StoredContent::contentHash).collect(Collectors.toSet())));
+        List<ContentStore.StoredContent> deleted = unused.stream()
+                .filter(content -> !referenced.contains(content.contentHash()))
+                .toList();
+        deleted.forEach(contentStore::delete);
+        log.info("Deleted {} stored files no imported submission uses", deleted.size());
+    }
+
+    // One row per manifest line whose file was stored and whose student exists, first line per student wins
+    private List<ImportRow> matchStudents(Map<String, String> manifest, Map<String, ContentStore.StoredContent> stored,
+                                          List<String> skipped) {
+        Map<String, User> studentsByEmail = new HashMap<>();
+        for (User user : userRepository.findByEmailIn(new HashSet<>(manifest.values()))) {
+            if (user.getRole() == UserRole.STUDENT) {
+                studentsByEmail.put(user.getEmail(), user);
+            }
+        }
+
+        List<ImportRow> rows = new ArrayList<>();
+        Set<Long> importedStudents = new HashSet<>();
+        manifest.forEach((name, email) -> {
+            ContentStore.StoredContent content = stored.get(name);
+            User student = studentsByEmail.get(email);
+            if (content == null) {
+                if (fileTextExtractor.isSupported(name)) {
+                    skipped.add(name + ": listed in " + MANIFEST_NAME + " but not in the ZIP");
+                }
+            } else if (student == null) {
+                skipped.add(name + ": no student with email " + email);
+            } else if (!importedStudents.add(student.getId())) {
+                skipped.add(name + ": another file of " + email + " is already imported");
+            } else {
+                rows.add(new ImportRow(name, student, content));
+            }
+        });
+        return rows;
+    }
+
+    /**
+     * Delete the students' existing submissions and insert the imported ones in one transaction,
+     * under the assignment's lock, so a failed import leaves the old submissions in place
+     */
+    private Imported replaceSubmissions(Assignment assignment, List<ImportRow> rows) {
+        if (rows.isEmpty()) {
+            return new Imported(List.of(), 0);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        return assignmentLocks.withLock(assignment.getId(), () -> transactionTemplate.execute(status -> {
+            // Taken out of their peers' results one by one, as on upload
+            List<Submission> replaced = submissionRepository.findByAssignmentIdAndStudentIdIn(assignment.getId(),
+                    rows.stream().map(row -> row.student().getId()).toList());
+            replaced.forEach(submissionService::deleteReplacedSubmission);
+
+            // Looked up after the deletes, so no duplicate points at a replaced submission
+            Map<String, Long> firstIdsByHash = new HashMap<>();
+            Set<String> contentHashes = new HashSet<>();
+            rows.forEach(row -> contentHashes.add(row.content().contentHash()));
+            for (Object[] first : submissionRepository.findFirstIdsByContentHash(assignment.getId(), contentHashes)) {
+                firstIdsByHash.put((String) first[0], (Long) first[1]);
+            }
+
+            List<Long> ids = new ArrayList<>(rows.size());
+            for (ImportRow row : rows) {
+                String contentHash = row.content().contentHash();
+                Submission submission = Submission.builder()
+                        .assignment(assignment)
+                        .student(row.student())
+                        .filePath(row.content().path().toString())
+                        .fileName(fileNameOf(row.entryName()))
+                        .contentHash(contentHash)
+                        .exactDuplicateOf(firstIdsByHash.get(contentHash))
+                        .status(SubmissionStatus.EXTRACTING)
+                        .extractionAttempts(0)
+                        .createdAt(now)
+                        .build();
+                // The sequence assigns the id here; the inserts go out in batches on commit
+                submissionRepository.save(submission);
+                firstIdsByHash.putIfAbsent(contentHash, submission.getId());
+                ids.add(submission.getId());
+            }
+            return new Imported(ids, replaced.size());
+        }));
+    }
+
+    /**
+     * Lines of {@code <path in the ZIP>,<student email>}; blank lines and a header line are skipped.
+     * The reader is not closed, since that would close the ZIP.
+     */
+    private Map<String, String> readManifest(InputStream zip, List<String> skipped) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(zip, StandardCharsets.UTF_8));
+        Map<String, String> manifest = new LinkedHashMap<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && line.toLowerCase().startsWith("file,"))) {
+                continue;
+            }
+            int comma = line.lastIndexOf(',');
+            if (comma <= 0 || comma == line.length() - 1) {
+                skipped.add(MANIFEST_NAME + " line " + lineNumber + ": expected <file>,<student email>");
+                continue;
+            }
+            String name = line.substring(0, comma).trim();
+            if (manifest.putIfAbsent(name, line.substring(comma + 1).trim()) != null) {
+                skipped.add(MANIFEST_NAME + " line " + lineNumber + ": " + name + " is listed twice");
+            }
+        }
+        return manifest;
+    }
+
+    private String fileNameOf(String entryName) {
+        return entryName.substring(entryName.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Counts the uncompressed bytes read from the ZIP and fails the import once they pass the limit
+     */
+    private static class LimitedInputStream extends CountingInputStream {
+        private final DataSize limit;
+        private boolean exceeded;
+
+        LimitedInputStream(InputStream in, DataSize limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        protected synchronized void afterRead(int n) {
+            super.afterRead(n);
+            if (getByteCount() > limit.toBytes()) {
+                exceeded = true;
+                throw new IllegalArgumentException("ZIP exceeds the maximum size of " + limit);
+            }
+        }
+
+        boolean isExceeded() {
+            return exceeded;
+        }
+    }
+}
@@ -1,24 +1,24 @@
 package com.plagiarism.service;
 
+import com.plagiarism.dto.CursorPage;
 import com.plagiarism.dto.SubmissionDTO;
 import com.plagiarism.entity.*;
 import com.plagiarism.repository.SubmissionRepository;
+import com.plagiarism.util.AssignmentLocks;
+import com.plagiarism.util.ContentStore;
 import com.plagiarism.util.FileTextExtractor;
-import com.plagiarism.util.PlagiarismDetectionEngine;
+import com.plagiarism.util.JsonArrayStreamer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -29,46 +29,80 @@ public class SubmissionService {
     private final AssignmentService assignmentService;
     private final UserService userService;
     private final FileTextExtractor fileTextExtractor;
-    private final PlagiarismDetectionEngine plagiarismEngine;
     private final PlagiarismService plagiarismService;
-
-    private static final String UPLOAD_DIR = System.getProperty("user.dir") + File.separator + "submissions"
-            + File.separator;
-
+    private final FingerprintService fingerprintService;
+    private final SubmissionTextService submissionTextService;
+    private final SubmissionSimilarityService submissionSimilarityService;
+    private final ContentStore contentStore;
+    private final TextExtractionQueue textExtractionQueue;
+    private final JsonArrayStreamer jsonArrayStreamer;
+    private final AssignmentLocks assignmentLocks;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Store an upload and queue its text extraction. The submission is returned in
+     * EXTRACTING as soon as the file is on disk and moves to SUBMITTED once its text
+     * has been extracted and fingerprinted.
+     */
     public Submission submitAssignment(Long assignmentId, Long studentId, MultipartFile file) {
         log.info("Starting submission upload for assignment {} student {}", assignmentId, studentId);
         Assignment assignment = assignmentService.getAssignmentById(assignmentId);
         User student = userService.getUserById(studentId);
+        if (!fileTextExtractor.isSupported(file.getOriginalFilename())) {
+            throw new IllegalArgumentException("Unsupported file format: " + file.getOriginalFilename());
+        }
 
-        // Delete existing submission if any
-        log.info("Checking for existing submission");
-        submissionRepository.findByAssignmentAndStudent(assignment, student).ifPresent(s -> {
-            log.info("Deleting existing submission {}", s.getId());
-            submissionRepository.delete(s);
-        });
-
-        // Save file
+        // Store the file under the hash of its bytes first, so a rejected upload keeps the previous submission
         log.info("Saving file: {}", file.getOriginalFilename());
-        String filePath = saveFile(file);
-        log.info("File saved to: {}", filePath);
+        ContentStore.StoredContent content = contentStore.store(file);
+        String filePath = content.path().toString();
+        log.info("File saved to: {} ({} bytes)", filePath, content.size());
 
-        // Extract text from file
-        log.info("Extracting text from file");
-        String extractedText = fileTextExtractor.extractTextFromFile(filePath);
-        log.info("Text extracted length: {}", extractedText.length());
+        // Delete existing submission if any
+        log.info("Checking for existing submission");
+        submissionRepository.findByAssignmentAndStudent(assignment, student).ifPresent(this::deleteReplacedSubmission);
+
+        // Byte-identical uploads are flagged before any text or n-gram work
+        Submission duplicateOf = submissionRepository
+                .findFirstByAssignmentIdAndContentHashOrderById(assignmentId, content.contentHash())
+                .orElse(null);
+        if (duplicateOf != null) {
+            log.info("Upload is an exact duplicate of submission {}", duplicateOf.getId());
+        }
 
         Submission submission = Submission.builder()
                 .assignment(assignment)
                 .student(student)
                 .filePath(filePath)
                 .fileName(file.getOriginalFilename())
-                .extractedText(extractedText)
-                .status(SubmissionStatus.SUBMITTED)
+                .contentHash(content.contentHash())
+                .exactDuplicateOf(duplicateOf != null ? duplicateOf.getId() : null)
+                .status(SubmissionStatus.EXTRACTING)
+                .extractionAttempts(0)
                 .createdAt(LocalDateTime.now())
                 .build();
 
         log.info("Saving submission to database");
-        return submissionRepository.save(submission);
+        Submission saved = submissionRepository.save(submission);
+        textExtractionQueue.enqueue(saved.getId());
+        return saved;
+    }
+
+    /**
+     * Delete a submission that a new upload replaces, taking it out of its peers' results first.
+     * Runs in one transaction under the assignment's lock, so no newcomer scores the submission
+     * between its retraction and the deletion of its fingerprint.
+     */
+    public void deleteReplacedSubmission(Submission submission) {
+        log.info("Deleting existing submission {}", submission.getId());
+        assignmentLocks.withLock(submission.getAssignment().getId(), () -> transactionTemplate.executeWithoutResult(
+                status -> {
+                    plagiarismService.retractFromPeerResults(submission);
+                    submissionSimilarityService.deleteScores(submission.getId());
+                    fingerprintService.deleteFingerprint(submission);
+                    submissionTextService.deleteText(submission);
+                    submissionRepository.delete(submission);
+                }));
     }
 
     public Submission getSubmissionById(Long id) {
@@ -77,31 +111,46 @@ public class SubmissionService {
     }
 
     public List<SubmissionDTO> getSubmissionsByAssignment(Long assignmentId) {
-        Assignment assignment = assignmentService.getAssignmentById(assignmentId);
-        return submissionRepository.findByAssignment(assignment).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return submissionRepository.findDTOsByAssignmentId(assignmentId, 0L, Pageable.unpaged());
+    }
+
+    public CursorPage<SubmissionDTO> getSubmissionPageByAssignment(Long assignmentId, Long cursor, Integer size) {
+        Pageable page = CursorPage.pageRequest(size);
+        return CursorPage.of(submissionRepository.findDTOsByAssignmentId(assignmentId, CursorPage.afterId(cursor), page),
+                page, SubmissionDTO::getId);
+    }
+
+    public StreamingResponseBody streamSubmissionsByAssignment(Long assignmentId) {
+        return jsonArrayStreamer.stream(() -> submissionRepository.streamDTOsByAssignmentId(assignmentId));
     }
 
     public List<SubmissionDTO> getSubmissionsByStudent(Long studentId) {
-        User student = userService.getUserById(studentId);
-        return submissionRepository.findByStudent(student).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return submissionRepository.findDTOsByStudentId(studentId, 0L, Pageable.unpaged());
+    }
+
+    public CursorPage<SubmissionDTO> getSubmissionPageByStudent(Long studentId, Long cursor, Integer size) {
+        Pageable page = CursorPage.pageRequest(size);
+        return CursorPage.of(submissionRepository.findDTOsByStudentId(studentId, CursorPage.afterId(cursor), page),
+                page, SubmissionDTO::getId);
+    }
+
+    public StreamingResponseBody streamSubmissionsByStudent(Long studentId) {
+        return jsonArrayStreamer.stream(() -> submissionRepository.streamDTOsByStudentId(studentId));
     }
 
     public Submission gradeSubmission(Long submissionId, Integer score, String feedback) {
-        Submission submission = getSubmissionById(submissionId);
-        submission.setScore(score);
-        submission.setFeedback(feedback);
-        submission.setStatus(SubmissionStatus.GRADED);
-        return submissionRepository.save(submission);
+        if (submissionRepository.updateGrade(submissionId, score, feedback, SubmissionStatus.GRADED,
+                LocalDateTime.now()) == 0) {
+            throw new RuntimeException("Submission not found");
+        }
+        return getSubmissionById(submissionId);
     }
 
     public Submission updateSubmissionStatus(Long submissionId, SubmissionStatus status) {
-        Submission submission = getSubmissionById(submissionId);
-        submission.setStatus(status);
-        return submissionRepository.save(submission);
+        if (submissionRepository.updateStatusById(submissionId, status, LocalDateTime.now()) == 0) {
+            throw new RuntimeException("Submission not found");
+        }
+        return getSubmissionById(submissionId);
     }
 
     public SubmissionDTO convertToDTO(Submission submission) {
@@ -111,9 +160,11 @@ public class SubmissionService {
                 .studentId(submission.getStudent().getId())
                 .studentName(submission.getStudent().getFullName())
                 .fileName(submission.getFileName())
+                .exactDuplicateOf(submission.getExactDuplicateOf())
                 .status(submission.getStatus().toString())
                 .score(submission.getScore())
                 .feedback(submission.getFeedback())
+                .version(submission.getVersion())
                 .submittedAt(submission.getCreatedAt())
                 .build();
 
@@ -123,16 +174,4 @@ public class SubmissionService {
 
         return dto;
     }
-
-    private String saveFile(MultipartFile file) {
-        try {
-            Files.createDirectories(Paths.get(UPLOAD_DIR));
-            String fileName = System.currentTimeMillis() + "_" + file.getOriginalFilename();
-            Path filePath = Paths.get(UPLOAD_DIR, fileName);
-            Files.write(filePath, file.getBytes());
-            return filePath.toString();
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to save file", e);
-        }
-    }
 }
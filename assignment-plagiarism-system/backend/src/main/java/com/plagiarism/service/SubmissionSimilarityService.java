@@ -0,0 +1,122 @@
+package com.plagiarism.service;
+
+import com.plagiarism.dto.SimilarityMatchDTO;
+import com.plagiarism.repository.SubmissionSimilarityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the pairwise scores of every check so the matches of a submission can be
+ * read back from an index instead of being recomputed. Rows are written with
+ * batched JDBC inserts.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SubmissionSimilarityService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int DEFAULT_MATCH_LIMIT = 10;
+    private static final int MAX_MATCH_LIMIT = 1000;
+
+    private static final String INSERT_SQL =
+            "insert into submission_similarities (submission_id, peer_id, assignment_id, score) values (?, ?, ?, ?)";
+
+    private final SubmissionSimilarityRepository similarityRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Replace the stored pairs of one submission with freshly computed peer scores.
+     * Peers missing from {@code scores} count as zero and are not stored.
+     */
+    @Transactional
+    public void replaceScores(Long assignmentId, Long submissionId, Map<Long, Double> scores) {
+        deleteScores(submissionId);
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (entry.getValue() > 0) {
+                add(batch, submissionId, entry.getKey(), assignmentId, entry.getValue());
+                add(batch, entry.getKey(), submissionId, assignmentId, entry.getValue());
+            }
+        }
+        flush(batch);
+    }
+
+    /**
+     * Replace all stored pairs of an assignment with the upper triangle of its similarity
+     * matrix, where {@code scores} holds the pairs (0, 1), (0, 2), ..., (1, 2), ... in row order
+     */
+    @Transactional
+    public void replaceAssignmentScores(Long assignmentId, Long[] submissionIds, double[] scores) {
+        jdbcTemplate.update("delete from submission_similarities where assignment_id = ?", assignmentId);
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        int stored = 0;
+        int index = 0;
+        for (int i = 0; i < submissionIds.length; i++) {
+            for (int j = i + 1; j < submissionIds.length; j++) {
+                double score = scores[index++];
+                if (score > 0) {
+                    add(batch, submissionIds[i], submissionIds[j], assignmentId, score);
+                    add(batch, submissionIds[j], submissionIds[i], assignmentId, score);
+                    stored++;
+                }
+            }
+        }
+        flush(batch);
+        log.debug("Stored {} scored pairs for assignment {}", stored, assignmentId);
+    }
+
+    @Transactional
+    public void deleteScores(Long submissionId) {
+        jdbcTemplate.update("delete from submission_similarities where submission_id = ? or peer_id = ?",
+                submissionId, submissionId);
+    }
+
+    /**
+     * The {@code limit} best-scoring peers of a submission, highest first
+     */
+    public List<SimilarityMatchDTO> getTopMatches(Long submissionId, Integer limit) {
+        if (limit != null && (limit <= 0 || limit > MAX_MATCH_LIMIT)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_MATCH_LIMIT);
+        }
+        return similarityRepository.findTopMatches(submissionId,
+                PageRequest.of(0, limit != null ? limit : DEFAULT_MATCH_LIMIT));
+    }
+
+    /**
+     * Highest stored score of each submission in an assignment against any peer other
+     * than {@code excludedPeerId}. Submissions without such a pair are absent.
+     */
+    public Map<Long, Double> getMaxScores(Long assignmentId, Long excludedPeerId) {
+        Map<Long, Double> maxScores = new HashMap<>();
+        for (Object[] row : similarityRepository.findMaxScores(assignmentId, excludedPeerId)) {
+            maxScores.put((Long) row[0], (Double) row[1]);
+        }
+        return maxScores;
+    }
+
+    private void add(List<Object[]> batch, Long submissionId, Long peerId, Long assignmentId, double score) {
+        batch.add(new Object[]{submissionId, peerId, assignmentId, score});
+        if (batch.size() == BATCH_SIZE) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+            batch.clear();
+        }
+    }
+}
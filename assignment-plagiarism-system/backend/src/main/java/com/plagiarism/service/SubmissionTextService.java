@@ -0,0 +1,119 @@
+package com.plagiarism.service;
+
+import com.plagiarism.entity.Submission;
+import com.plagiarism.entity.SubmissionText;
+import com.plagiarism.repository.SubmissionTextRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores the extracted text of submissions compressed in its own table.
+ * Only the detection path reads it; listings load the submission rows alone.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SubmissionTextService {
+
+    private static final int MIGRATION_BATCH_SIZE = 100;
+
+    private final SubmissionTextRepository submissionTextRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public void saveText(Long submissionId, String text) {
+        submissionTextRepository.save(SubmissionText.builder()
+                .submissionId(submissionId)
+                .compressedText(compress(text))
+                .textLength(text.length())
+                .build());
+    }
+
+    /**
+     * Extracted text of a submission, or an empty string if none was stored
+     */
+    public String getText(Submission submission) {
+        return findText(submission.getId()).orElse("");
+    }
+
+    public Optional<String> findText(Long submissionId) {
+        return submissionTextRepository.findById(submissionId)
+                .map(stored -> decompress(stored.getCompressedText()));
+    }
+
+    public void deleteText(Submission submission) {
+        if (submissionTextRepository.existsById(submission.getId())) {
+            submissionTextRepository.deleteById(submission.getId());
+        }
+    }
+
+    /**
+     * Move text still stored inline in submissions.extracted_text (from before this
+     * table existed) into compressed storage, a batch at a time
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInlineText() {
+        Integer columns = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.columns where table_schema = database() " +
+                        "and table_name = 'submissions' and column_name = 'extracted_text'", Integer.class);
+        if (columns == null || columns == 0) {
+            return;
+        }
+
+        int migrated = 0;
+        List<Map<String, Object>> batch;
+        do {
+            batch = jdbcTemplate.queryForList(
+                    "select id, extracted_text from submissions where extracted_text is not null limit ?",
+                    MIGRATION_BATCH_SIZE);
+            for (Map<String, Object> row : batch) {
+                Long submissionId = ((Number) row.get("id")).longValue();
+                if (!submissionTextRepository.existsById(submissionId)) {
+                    saveText(submissionId, (String) row.get("extracted_text"));
+                }
+                jdbcTemplate.update("update submissions set extracted_text = null where id = ?", submissionId);
+                migrated++;
+            }
+        } while (!batch.isEmpty());
+
+        if (migrated > 0) {
+            log.info("Moved the extracted text of {} submissions into compressed storage", migrated);
+        }
+    }
+
+    private byte[] compress(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compress submission text", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private String decompress(byte[] data) {
+        if (data == null) {
+            return "";
+        }
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decompress submission text", e);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.plagiarism.service;
+
+import com.plagiarism.entity.SubmissionStatus;
+import com.plagiarism.repository.SubmissionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs text extraction for uploaded submissions on a bounded worker pool, so an upload
+ * returns as soon as its file is stored. Failed extractions are retried with a growing
+ * delay; after the last attempt the submission is parked in EXTRACTION_FAILED. Progress
+ * lives in the submission's status, so extractions interrupted by a restart are queued
+ * again on startup. When an {@code ioThreadFactory} bean is defined (virtual threads on
+ * Java 21) every extraction gets a thread of its own and a semaphore keeps at most
+ * {@code extraction.workers} of them running; otherwise a fixed pool of that many
+ * platform threads runs them.
+ */
+@Service
+@Slf4j
+public class TextExtractionQueue {
+
+    private final TextExtractionService textExtractionService;
+    private final SubmissionRepository submissionRepository;
+    private final ExecutorService executor;
+    private final Executor dispatcher;
+    private final ScheduledExecutorService retryScheduler;
+    private final int maxAttempts;
+    private final long retryDelaySeconds;
+
+    // Submissions queued, running or waiting for a retry
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    public TextExtractionQueue(TextExtractionService textExtractionService,
+                               SubmissionRepository submissionRepository,
+                               @Qualifier("ioThreadFactory") ObjectProvider<ThreadFactory> ioThreadFactory,
+                               @Value("${extraction.workers:2}") int workers,
+                               @Value("${extraction.queue-capacity:1000}") int queueCapacity,
+                               @Value("${extraction.max-attempts:3}") int maxAttempts,
+                               @Value("${extraction.retry-delay-seconds:10}") long retryDelaySeconds) {
+        this.textExtractionService = textExtractionService;
+        this.submissionRepository = submissionRepository;
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.retryDelaySeconds = retryDelaySeconds;
+
+        ThreadFactory virtualThreads = ioThreadFactory.getIfAvailable();
+        if (virtualThreads != null) {
+            // Pooling virtual threads would only cap them; the semaphore does the limiting instead
+            this.executor = newThreadPerTaskExecutor(virtualThreads);
+            this.dispatcher = bounded(executor, workers, queueCapacity);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "text-extraction-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.dispatcher = executor;
+        }
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "text-extraction-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue the extraction of a submission in EXTRACTING; does nothing if it is already pending
+     */
+    public void enqueue(Long submissionId) {
+        if (pending.add(submissionId)) {
+            submit(submissionId);
+        }
+    }
+
+    /**
+     * Queue a submission parked in EXTRACTION_FAILED again, with a fresh set of attempts
+     */
+    public void retryFailed(Long submissionId) {
+        textExtractionService.resetFailed(submissionId);
+        enqueue(submissionId);
+    }
+
+    /**
+     * Queue the extractions that were pending when the application last stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPending() {
+        List<Long> submissionIds = submissionRepository.findIdsByStatus(SubmissionStatus.EXTRACTING);
+        if (!submissionIds.isEmpty()) {
+            log.info("Resuming text extraction for {} submissions", submissionIds.size());
+            submissionIds.forEach(this::enqueue);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void submit(Long submissionId) {
+        try {
+            dispatcher.execute(() -> run(submissionId));
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            // The submission stays in EXTRACTING; back off instead of failing the upload
+            log.warn("Text extraction queue is full, retrying submission {} in {}s", submissionId, retryDelaySeconds);
+            schedule(submissionId, retryDelaySeconds);
+        }
+    }
+
+    private void run(Long submissionId) {
+        boolean retryScheduled = false;
+        try {
+            textExtractionService.extract(submissionId);
+        } catch (Exception e) {
+            retryScheduled = handleFailure(submissionId, e);
+        } finally {
+            // Whatever failed, the id must not stay pending or the submission could never be queued again
+            if (!retryScheduled) {
+                pending.remove(submissionId);
+            }
+        }
+    }
+
+    // Record a failed attempt and schedule the next one; returns whether one was scheduled
+    private boolean handleFailure(Long submissionId, Exception e) {
+        int attempts;
+        try {
+            attempts = textExtractionService.recordFailure(submissionId, e.getMessage(), maxAttempts);
+        } catch (RuntimeException recordError) {
+            // The submission stays in EXTRACTING and is queued again on the next start
+            recordError.addSuppressed(e);
+            log.error("Could not record the failed text extraction of submission {}", submissionId, recordError);
+            return false;
+        }
+
+        if (attempts < 0 || attempts >= maxAttempts) {
+            log.error("Text extraction failed for submission {} after {} attempts", submissionId, attempts, e);
+            return false;
+        }
+        long delaySeconds = retryDelaySeconds * attempts;
+        log.warn("Text extraction attempt {} failed for submission {}, retrying in {}s: {}",
+                attempts, submissionId, delaySeconds, e.getMessage());
+        schedule(submissionId, delaySeconds);
+        return true;
+    }
+
+    // Executors.newThreadPerTaskExecutor is Java 21 API; the factory bean only exists in the java21 build
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Thread-per-task executors need Java 21", e);
+        }
+    }
+
+    /**
+     * Admit at most {@code workers + queueCapacity} tasks, like the platform pool's queue,
+     * and let {@code workers} of them run at once; the others wait on their own thread
+     */
+    private static Executor bounded(ExecutorService executor, int workers, int queueCapacity) {
+        Semaphore admitted = new Semaphore(workers + queueCapacity);
+        Semaphore running = new Semaphore(workers);
+        return task -> {
+            if (!admitted.tryAcquire()) {
+                throw new RejectedExecutionException("Text extraction queue is full");
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        running.acquire();
+                        try {
+                            task.run();
+                        } finally {
+                            running.release();
+                        }
+                    } catch (InterruptedException e) {
+                        // Shutting down; the submission is picked up again on the next start
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        admitted.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                admitted.release();
+                throw e;
+            }
+        };
+    }
+
+    private void schedule(Long submissionId, long delaySeconds) {
+        try {
+            retryScheduler.schedule(() -> submit(submissionId), delaySeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the submission is picked up again on the next start
+            pending.remove(submissionId);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.plagiarism.service;
+
+import com.plagiarism.entity.Submission;
+import com.plagiarism.entity.SubmissionStatus;
+import com.plagiarism.repository.SubmissionRepository;
+import com.plagiarism.util.ContentStore;
+import com.plagiarism.util.FileTextExtractor;
+import com.plagiarism.util.FingerprintWriter;
+import com.plagiarism.util.PlagiarismDetectionEngine;
+import com.plagiarism.util.TextFingerprint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.io.output.TeeWriter;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Second stage of an upload: extracts the text of a stored submission file, fingerprints
+ * it and scores it against its peers, then moves the submission from EXTRACTING to
+ * SUBMITTED. Runs on the {@link TextExtractionQueue} workers, never on a request thread.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TextExtractionService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final SubmissionRepository submissionRepository;
+    private final FileTextExtractor fileTextExtractor;
+    private final PlagiarismDetectionEngine plagiarismEngine;
+    private final PlagiarismService plagiarismService;
+    private final FingerprintService fingerprintService;
+    private final ContentStore contentStore;
+
+    /**
+     * Extract and fingerprint the text of a submission still in EXTRACTING. Submissions that
+     * were deleted or already completed in the meantime are skipped.
+     */
+    public void extract(Long submissionId) {
+        Submission submission = submissionRepository.findById(submissionId).orElse(null);
+        if (submission == null || submission.getStatus() != SubmissionStatus.EXTRACTING) {
+            log.debug("Skipping extraction of submission {}, it is gone or no longer pending", submissionId);
+            return;
+        }
+
+        ContentStore.StoredContent content = contentStore.open(submission.getContentHash(),
+                Paths.get(submission.getFilePath()));
+
+        // Extract text from file, tokenizing it for the fingerprint as it streams in
+        FingerprintWriter fingerprintWriter = null;
+        String extractedText = contentStore.getCachedText(content).orElse(null);
+        if (extractedText != null) {
+            log.info("Using cached text for content {}", content.contentHash());
+        } else {
+            log.info("Extracting text from {}", content.path());
+            StringBuilderWriter text = new StringBuilderWriter();
+            fingerprintWriter = plagiarismEngine.fingerprintWriter();
+            fileTextExtractor.extractTextFromFile(content.path().toString(), new TeeWriter(text, fingerprintWriter));
+            extractedText = text.toString();
+            contentStore.cacheText(content, extractedText);
+        }
+        log.info("Text extracted length: {}", extractedText.length());
+
+        // Fingerprint once at upload so plagiarism checks never re-tokenize this text
+        Submission duplicateOf = findExtractedDuplicate(submission);
+        TextFingerprint fingerprint;
+        if (duplicateOf != null) {
+            fingerprint = fingerprintService.getFingerprint(duplicateOf);
+        } else if (fingerprintWriter != null) {
+            fingerprint = plagiarismEngine.createFingerprint(fingerprintWriter.getTokenHashes());
+        } else {
+            fingerprint = plagiarismEngine.createFingerprint(extractedText);
+        }
+        plagiarismService.addExtractedSubmission(submission, extractedText, fingerprint);
+    }
+
+    /**
+     * Count a failed extraction attempt. Once {@code maxAttempts} is reached the submission
+     * is moved to EXTRACTION_FAILED and stays there until it is requeued.
+     *
+     * @return the failed attempts so far, or -1 if the submission no longer exists or is no longer extracting
+     */
+    public int recordFailure(Long submissionId, String error, int maxAttempts) {
+        Submission submission = submissionRepository.findById(submissionId).orElse(null);
+        if (submission == null) {
+            return -1;
+        }
+
+        int attempts = (submission.getExtractionAttempts() != null ? submission.getExtractionAttempts() : 0) + 1;
+        int updated = submissionRepository.updateExtractionState(submissionId,
+                attempts >= maxAttempts ? SubmissionStatus.EXTRACTION_FAILED : SubmissionStatus.EXTRACTING,
+                attempts,
+                error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error,
+                List.of(SubmissionStatus.EXTRACTING));
+        return updated > 0 ? attempts : -1;
+    }
+
+    /**
+     * Put a submission whose extraction failed back into EXTRACTING with a fresh attempt count
+     */
+    public void resetFailed(Long submissionId) {
+        if (submissionRepository.updateExtractionState(submissionId, SubmissionStatus.EXTRACTING, 0, null,
+                List.of(SubmissionStatus.EXTRACTION_FAILED)) == 0) {
+            if (!submissionRepository.existsById(submissionId)) {
+                throw new RuntimeException("Submission not found");
+            }
+            throw new IllegalStateException("Submission text extraction has not failed");
+        }
+    }
+
+    // A byte-identical earlier upload whose fingerprint can be reused, if it was extracted already
+    private Submission findExtractedDuplicate(Submission submission) {
+        if (submission.getExactDuplicateOf() == null) {
+            return null;
+        }
+        return submissionRepository.findById(submission.getExactDuplicateOf())
+                .filter(duplicate -> !EnumSet.of(SubmissionStatus.EXTRACTING, SubmissionStatus.EXTRACTION_FAILED)
+                        .contains(duplicate.getStatus()))
+                .orElse(null);
+    }
+}
@@ -1,19 +1,23 @@
 package com.plagiarism.service;
 
+import com.plagiarism.dto.CursorPage;
 import com.plagiarism.dto.UserDTO;
 import com.plagiarism.entity.User;
 import com.plagiarism.entity.UserRole;
 import com.plagiarism.repository.UserRepository;
+import com.plagiarism.security.UserStatusCache;
+import com.plagiarism.util.JsonArrayStreamer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -22,6 +26,8 @@ public class UserService implements UserDetailsService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final JsonArrayStreamer jsonArrayStreamer;
+    private final UserStatusCache userStatusCache;
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
@@ -66,30 +72,47 @@ public class UserService implements UserDetailsService {
     }
 
     public List<UserDTO> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return userRepository.findAllDTOs(0L, Pageable.unpaged());
+    }
+
+    public CursorPage<UserDTO> getUserPage(Long cursor, Integer size) {
+        Pageable page = CursorPage.pageRequest(size);
+        return CursorPage.of(userRepository.findAllDTOs(CursorPage.afterId(cursor), page), page, UserDTO::getId);
+    }
+
+    public StreamingResponseBody streamAllUsers() {
+        return jsonArrayStreamer.stream(userRepository::streamAllDTOs);
     }
 
     public List<UserDTO> getUsersByRole(UserRole role) {
-        return userRepository.findByRole(role).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return userRepository.findDTOsByRole(role, 0L, Pageable.unpaged());
+    }
+
+    public CursorPage<UserDTO> getUserPageByRole(UserRole role, Long cursor, Integer size) {
+        Pageable page = CursorPage.pageRequest(size);
+        return CursorPage.of(userRepository.findDTOsByRole(role, CursorPage.afterId(cursor), page), page, UserDTO::getId);
+    }
+
+    public StreamingResponseBody streamUsersByRole(UserRole role) {
+        return jsonArrayStreamer.stream(() -> userRepository.streamDTOsByRole(role));
     }
 
     public void disableUser(Long userId) {
         User user = getUserById(userId);
         user.setEnabled(false);
         userRepository.save(user);
+        userStatusCache.evict(userId);
     }
 
     public void enableUser(Long userId) {
         User user = getUserById(userId);
         user.setEnabled(true);
         userRepository.save(user);
+        userStatusCache.evict(userId);
     }
 
     public void deleteUser(Long userId) {
         userRepository.deleteById(userId);
+        userStatusCache.evict(userId);
     }
 }
@@ -0,0 +1,38 @@
+package com.plagiarism.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * One lock per assignment, serializing the work that reads peer scores and rewrites the
+ * plagiarism results of an assignment: incremental updates, retractions and full checks.
+ * Take the lock before starting the transaction, so the transaction sees everything
+ * committed under the lock before it. The candidate indexes already live in this process,
+ * so an in-process lock covers every writer. Locks are reentrant.
+ */
+@Component
+public class AssignmentLocks {
+
+    private final Map<Long, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    public <T> T withLock(Long assignmentId, Supplier<T> work) {
+        ReentrantLock lock = locks.computeIfAbsent(assignmentId, id -> new ReentrantLock());
+        lock.lock();
+        try {
+            return work.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLock(Long assignmentId, Runnable work) {
+        withLock(assignmentId, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
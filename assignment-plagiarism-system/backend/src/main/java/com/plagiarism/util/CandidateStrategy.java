@@ -0,0 +1,11 @@
+package com.plagiarism.util;
+
+/**
+ * How the peers of a submission are selected for exact scoring
+ */
+public enum CandidateStrategy {
+    ALL,          // score every submission in the assignment
+    NGRAM_INDEX,  // peers sharing a minimum number of hashed n-grams
+    MINHASH_LSH,  // peers sharing at least one MinHash LSH bucket
+    CORPUS        // peers sharing a minimum number of n-grams in the memory-mapped corpus index
+}
@@ -0,0 +1,205 @@
+package com.plagiarism.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Content-addressed store for uploaded files. Each upload is copied channel to channel
+ * through one direct buffer, hashed with SHA-256 and checked against the size limit on
+ * the way, so identical bytes end up in a single blob and no upload is ever held on the
+ * heap. The text extracted from a blob is cached next to it under the same key.
+ */
+@Slf4j
+@Component
+public class ContentStore {
+
+    private static final Path BLOB_DIR = Paths.get(System.getProperty("user.dir"), "submissions", "blobs");
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    // Uploads larger than this are rejected while they are copied (0 = no limit)
+    @Value("${upload.max-file-size:10MB}")
+    private DataSize maxFileSize = DataSize.ofMegabytes(10);
+
+    /**
+     * A blob on disk, the SHA-256 of its bytes and its size. {@code created} is set when
+     * storing wrote the blob rather than finding the same bytes already stored.
+     */
+    public record StoredContent(String contentHash, Path path, long size, boolean created) {
+    }
+
+    /**
+     * Write an upload into the store, hashing it on the way to disk
+     */
+    public StoredContent store(MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            return store(in, file.getOriginalFilename());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save file", e);
+        }
+    }
+
+    /**
+     * Write a stream into the store, hashing it on the way to disk; the stream is not closed
+     *
+     * @throws IllegalArgumentException if the stream is larger than the upload size limit
+     */
+    public StoredContent store(InputStream in, String fileName) {
+        try {
+            Files.createDirectories(BLOB_DIR);
+            Path temp = Files.createTempFile(BLOB_DIR, "upload-", ".tmp");
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                long size = copy(in, temp, digest);
+
+                String contentHash = HexFormat.of().formatHex(digest.digest());
+                Path blob = blobPath(contentHash, extensionOf(fileName));
+                boolean created = !Files.exists(blob);
+                if (created) {
+                    Files.createDirectories(blob.getParent());
+                    created = moveIntoPlace(temp, blob);
+                } else {
+                    log.info("Upload {} matches stored blob {}", fileName, contentHash);
+                }
+                return new StoredContent(contentHash, blob, size, created);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to save file", e);
+        }
+    }
+
+    /**
+     * Copy a stream into a file through a direct buffer, feeding every chunk to the digest
+     * and aborting as soon as the size limit is passed. Multipart uploads spooled to disk
+     * are read through their file channel, so the bytes never enter the heap.
+     */
+    private long copy(InputStream in, Path target, MessageDigest digest) throws IOException {
+        long limit = maxFileSize.toBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_BYTES);
+        long size = 0;
+
+        // Not closed: closing the channel would close the caller's stream
+        ReadableByteChannel source = in instanceof FileInputStream fileIn ? fileIn.getChannel() : Channels.newChannel(in);
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                size += buffer.remaining();
+                if (limit > 0 && size > limit) {
+                    throw new IllegalArgumentException("File exceeds the maximum size of " + maxFileSize);
+                }
+                buffer.mark();
+                digest.update(buffer);
+                buffer.reset();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A blob stored earlier, e.g. by a previous request
+     */
+    public StoredContent open(String contentHash, Path path) {
+        try {
+            return new StoredContent(contentHash, path, Files.size(path), false);
+        } catch (IOException e) {
+            throw new RuntimeException("Stored file is missing: " + path, e);
+        }
+    }
+
+    /**
+     * Text previously extracted from this blob, if any
+     */
+    public Optional<String> getCachedText(StoredContent content) {
+        Path cached = textPath(content);
+        if (!Files.exists(cached)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readString(cached, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Could not read cached text for blob {}", content.contentHash(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Delete a blob and its cached text; the caller makes sure no submission points at it
+     */
+    public void delete(StoredContent content) {
+        try {
+            Files.deleteIfExists(textPath(content));
+            Files.deleteIfExists(content.path());
+        } catch (IOException e) {
+            log.warn("Could not delete blob {}", content.contentHash(), e);
+        }
+    }
+
+    public void cacheText(StoredContent content, String text) {
+        Path cached = textPath(content);
+        try {
+            Path temp = Files.createTempFile(cached.getParent(), "text-", ".tmp");
+            try {
+                Files.writeString(temp, text, StandardCharsets.UTF_8);
+                moveIntoPlace(temp, cached);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // The cache is only an optimization; the next upload will extract again
+            log.warn("Could not cache extracted text for blob {}", content.contentHash(), e);
+        }
+    }
+
+    // Blobs keep the upload's extension because text extraction dispatches on it
+    private Path blobPath(String contentHash, String extension) {
+        return BLOB_DIR.resolve(contentHash.substring(0, 2)).resolve(contentHash + extension);
+    }
+
+    private Path textPath(StoredContent content) {
+        return content.path().resolveSibling(content.path().getFileName() + ".txt");
+    }
+
+    // False if another upload of the same bytes won the race; its copy is identical
+    private boolean moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private String extensionOf(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        String name = new File(fileName).getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot).toLowerCase();
+    }
+}
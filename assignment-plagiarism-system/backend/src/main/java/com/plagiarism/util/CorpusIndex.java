@@ -0,0 +1,615 @@
+package com.plagiarism.util;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Disk-based index of the fingerprints of every submission ever fingerprinted, across
+ * assignments: an inverted index of their n-grams plus the fingerprints themselves, so
+ * candidates are scored without loading anything from the database. New documents collect
+ * in memory and are written out as immutable, memory-mapped segment files; a background
+ * thread merges small segments into larger ones, dropping documents that no longer exist.
+ * Deleted documents are hidden by tombstones until a merge drops them. A MANIFEST file
+ * lists the live segments and the tombstones, so a restart maps the segments and only
+ * reads the fingerprints of the submissions they do not contain from the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CorpusIndex {
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".pcs";
+
+    @Value("${plagiarism.corpus.enabled:false}")
+    private boolean enabled;
+
+    @Value("${plagiarism.corpus.dir:corpus}")
+    private String directory;
+
+    // Documents kept in memory before they are written out as a segment
+    @Value("${plagiarism.corpus.flush-documents:1000}")
+    private int flushDocuments = 1000;
+
+    // Segments of similar size that are merged into one
+    @Value("${plagiarism.corpus.merge-factor:8}")
+    private int mergeFactor = 8;
+
+    private final PlagiarismDetectionEngine plagiarismEngine;
+
+    private final ExecutorService maintenance = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "corpus-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean deletionsPending = new AtomicBoolean(); // tombstones not yet in the manifest
+    private Path root;
+    private volatile boolean open;
+    private volatile boolean ready;
+    private Function<Collection<Long>, Set<Long>> liveSubmissions;
+    private List<CorpusSegment> segments = List.of();
+    private Map<Long, Document> memtable = new LinkedHashMap<>();
+    private Map<Long, Document> flushing = Map.of(); // being written, still searchable
+    private volatile Set<Long> deleted = Set.of(); // documents in segments that no longer exist
+    private long nextGeneration = 1;
+
+    private record Document(long submissionId, long assignmentId, TextFingerprint fingerprint) {
+    }
+
+    /**
+     * A corpus document sharing n-grams with a query
+     */
+    public record Candidate(Long submissionId, Long assignmentId, int sharedNGrams) {
+    }
+
+    /**
+     * A corpus document scored against a query
+     */
+    public record Match(Long submissionId, Long assignmentId, double score) {
+    }
+
+    // A candidate and where its fingerprint lives: a segment ordinal or an in-memory document
+    private record Hit(Candidate candidate, CorpusSegment segment, int ordinal, Document document) {
+    }
+
+    // Segments, in-memory documents and tombstones visible to one query; the segments are retained
+    private record Snapshot(List<CorpusSegment> segments, List<Document> documents, Set<Long> deleted)
+            implements AutoCloseable {
+        @Override
+        public void close() {
+            segments.forEach(CorpusSegment::release);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the index is open and holds every stored fingerprint
+     */
+    public boolean isReady() {
+        return open && ready;
+    }
+
+    /**
+     * Called once the fingerprints stored before the index was opened have all been added
+     */
+    public void markReady() {
+        ready = true;
+    }
+
+    /**
+     * Load the segments listed in the manifest. Segments written for another fingerprint
+     * version are discarded, as are files a crash left behind.
+     *
+     * @param liveSubmissions returns which of the given submission ids still exist; used by merges
+     */
+    public void open(Function<Collection<Long>, Set<Long>> liveSubmissions) throws IOException {
+        this.liveSubmissions = liveSubmissions;
+        this.root = Paths.get(directory).toAbsolutePath();
+        Files.createDirectories(root);
+
+        List<CorpusSegment> loaded = new ArrayList<>();
+        Set<Long> tombstones = new HashSet<>();
+        Path manifest = root.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            Properties properties = new Properties();
+            try (var reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            if (Integer.parseInt(properties.getProperty("fingerprint-version", "0")) == TextFingerprint.VERSION) {
+                try {
+                    for (String name : properties.getProperty("segments", "").split(",")) {
+                        if (!name.isBlank()) {
+                            loaded.add(CorpusSegment.open(root.resolve(name)));
+                        }
+                    }
+                    for (String id : properties.getProperty("deleted", "").split(",")) {
+                        if (!id.isBlank()) {
+                            tombstones.add(Long.parseLong(id));
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("Corpus index segments are unreadable or of an older format, rebuilding them", e);
+                    loaded.forEach(CorpusSegment::retire);
+                    loaded.clear();
+                    tombstones.clear();
+                }
+            } else {
+                log.info("Corpus index was built for another fingerprint version, rebuilding it");
+            }
+        }
+
+        Set<Path> live = new HashSet<>();
+        loaded.forEach(segment -> live.add(segment.getPath()));
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX)) {
+                    nextGeneration = Math.max(nextGeneration, generationOf(name) + 1);
+                    if (!live.contains(file)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            segments = List.copyOf(loaded);
+            deleted = Set.copyOf(tombstones);
+            open = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Opened corpus index in {}: {} segments, {} documents", root, loaded.size(),
+                loaded.stream().mapToInt(CorpusSegment::getDocumentCount).sum());
+        maintenance.execute(this::mergeSegments);
+    }
+
+    /**
+     * Whether a submission is indexed, in a segment or still in memory
+     */
+    public boolean contains(Long submissionId) {
+        if (!open) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return isIndexed(submissionId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add a fingerprinted submission; ignored if it is already indexed or the index is closed
+     */
+    public void add(Long submissionId, Long assignmentId, TextFingerprint fingerprint) {
+        if (!open || fingerprint.isEmpty()) {
+            return;
+        }
+
+        boolean flush;
+        lock.writeLock().lock();
+        try {
+            if (isIndexed(submissionId)) {
+                return;
+            }
+            memtable.put(submissionId, new Document(submissionId, assignmentId, fingerprint));
+            flush = memtable.size() >= flushDocuments;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (flush) {
+            maintenance.execute(this::flush);
+        }
+    }
+
+    /**
+     * Remove a deleted submission. Documents already written to a segment are hidden by a
+     * tombstone, kept in the manifest until a merge rewrites the segment without them. The
+     * manifest is rewritten on the maintenance thread, once for all deletions made meanwhile.
+     */
+    public void remove(Long submissionId) {
+        if (!open) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            memtable.remove(submissionId);
+            if (deleted.contains(submissionId) || !(flushing.containsKey(submissionId)
+                    || segments.stream().anyMatch(segment -> segment.containsSubmission(submissionId)))) {
+                return;
+            }
+            Set<Long> updated = new HashSet<>(deleted);
+            updated.add(submissionId);
+            deleted = Set.copyOf(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (deletionsPending.compareAndSet(false, true)) {
+            maintenance.execute(this::writeDeletions);
+        }
+    }
+
+    /**
+     * Find the indexed submissions sharing at least {@code minShared} n-grams with the given ones
+     *
+     * @param sortedHashes     distinct n-gram hashes in ascending order
+     * @param acceptAssignment which assignments' documents to consider
+     */
+    public List<Candidate> findCandidates(long[] sortedHashes, int minShared, LongPredicate acceptAssignment) {
+        try (Snapshot snapshot = snapshot()) {
+            return collectHits(snapshot, sortedHashes, minShared, acceptAssignment).stream()
+                    .map(Hit::candidate)
+                    .toList();
+        }
+    }
+
+    /**
+     * Score the {@code maxCandidates} documents sharing the most n-grams with a fingerprint,
+     * reading their stored fingerprints in place from the mapped segments
+     *
+     * @return the documents with a positive score, in no particular order
+     */
+    public List<Match> findSimilar(TextFingerprint fingerprint, int minShared, int maxCandidates,
+                                   LongPredicate acceptAssignment) {
+        try (Snapshot snapshot = snapshot()) {
+            List<Hit> hits = new ArrayList<>(collectHits(snapshot, fingerprint.getNGramHashes(), minShared,
+                    acceptAssignment));
+            hits.sort(Comparator.comparingInt((Hit hit) -> hit.candidate().sharedNGrams()).reversed());
+
+            List<Match> matches = new ArrayList<>();
+            for (Hit hit : hits.subList(0, Math.min(maxCandidates, hits.size()))) {
+                double score = hit.segment() != null
+                        ? plagiarismEngine.calculateSimilarity(fingerprint, hit.segment().getFingerprint(hit.ordinal()))
+                        : plagiarismEngine.calculateSimilarity(fingerprint, hit.document().fingerprint());
+                if (score > 0) {
+                    matches.add(new Match(hit.candidate().submissionId(), hit.candidate().assignmentId(), score));
+                }
+            }
+            return matches;
+        }
+    }
+
+    // Caller holds the lock
+    private boolean isIndexed(Long submissionId) {
+        return memtable.containsKey(submissionId) || flushing.containsKey(submissionId)
+                || segments.stream().anyMatch(segment -> segment.containsSubmission(submissionId));
+    }
+
+    private Snapshot snapshot() {
+        if (!open) {
+            return new Snapshot(List.of(), List.of(), Set.of());
+        }
+        lock.readLock().lock();
+        try {
+            segments.forEach(CorpusSegment::retain);
+            List<Document> documents = new ArrayList<>(memtable.values());
+            documents.addAll(flushing.values());
+            return new Snapshot(segments, documents, deleted);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Hit> collectHits(Snapshot snapshot, long[] sortedHashes, int minShared,
+                                  LongPredicate acceptAssignment) {
+        List<Hit> hits = new ArrayList<>();
+        for (CorpusSegment segment : snapshot.segments()) {
+            int[] shared = segment.countShared(sortedHashes);
+            for (int ordinal = 0; ordinal < shared.length; ordinal++) {
+                if (shared[ordinal] >= minShared && acceptAssignment.test(segment.getAssignmentId(ordinal))
+                        && !snapshot.deleted().contains(segment.getSubmissionId(ordinal))) {
+                    hits.add(new Hit(new Candidate(segment.getSubmissionId(ordinal), segment.getAssignmentId(ordinal),
+                            shared[ordinal]), segment, ordinal, null));
+                }
+            }
+        }
+        for (Document document : snapshot.documents()) {
+            // Documents being flushed are hidden by tombstones too
+            if (acceptAssignment.test(document.assignmentId())
+                    && !snapshot.deleted().contains(document.submissionId())) {
+                int shared = countShared(sortedHashes, document.fingerprint().getNGramHashes());
+                if (shared >= minShared) {
+                    hits.add(new Hit(new Candidate(document.submissionId(), document.assignmentId(), shared),
+                            null, -1, document));
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Write the in-memory documents out and wait for pending maintenance
+     */
+    @PreDestroy
+    public void close() {
+        if (open) {
+            maintenance.execute(this::flush);
+        }
+        maintenance.shutdown();
+        try {
+            if (!maintenance.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Corpus maintenance did not finish before shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.writeLock().lock();
+        try {
+            open = false;
+            segments.forEach(CorpusSegment::close);
+            segments = List.of();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Runs on the maintenance thread only, so flushes and merges never overlap
+    private void flush() {
+        Map<Long, Document> batch;
+        lock.writeLock().lock();
+        try {
+            if (memtable.isEmpty()) {
+                return;
+            }
+            batch = memtable;
+            flushing = batch;
+            memtable = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Document> documents = new ArrayList<>(batch.values());
+        documents.sort(Comparator.comparingLong(Document::submissionId));
+        long[] submissionIds = new long[documents.size()];
+        long[] assignmentIds = new long[documents.size()];
+        List<CorpusSegmentWriter.TermSource> sources = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            submissionIds[i] = documents.get(i).submissionId();
+            assignmentIds[i] = documents.get(i).assignmentId();
+            sources.add(CorpusSegmentWriter.document(i, documents.get(i).fingerprint().getNGramHashes()));
+        }
+
+        try {
+            Path file = nextSegmentPath();
+            CorpusSegmentWriter.write(file, TextFingerprint.VERSION, submissionIds, assignmentIds, sources,
+                    (ordinal, out) -> CorpusSegmentWriter.writeFingerprint(documents.get(ordinal).fingerprint(), out));
+            CorpusSegment segment = CorpusSegment.open(file);
+
+            lock.writeLock().lock();
+            try {
+                List<CorpusSegment> updated = new ArrayList<>(segments);
+                updated.add(segment);
+                segments = List.copyOf(updated);
+                flushing = Map.of();
+                writeManifest();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Wrote corpus segment {} with {} documents", file.getFileName(), documents.size());
+        } catch (IOException e) {
+            log.error("Failed to write corpus segment, keeping {} documents in memory", documents.size(), e);
+            lock.writeLock().lock();
+            try {
+                batch.putAll(memtable);
+                memtable = batch;
+                flushing = Map.of();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        mergeSegments();
+    }
+
+    // Runs on the maintenance thread; deletions made while the manifest is written schedule another write
+    private void writeDeletions() {
+        deletionsPending.set(false);
+        lock.readLock().lock();
+        try {
+            if (open) {
+                writeManifest();
+            }
+        } catch (IOException e) {
+            log.warn("Could not record {} deleted submissions in the corpus manifest", deleted.size(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merge segments while some size tier holds {@code mergeFactor} of them. A segment's tier is
+     * the power of {@code mergeFactor} its size is in, counted in flushes, so each document is
+     * rewritten about once per tier and the number of segments stays logarithmic in the corpus.
+     */
+    private void mergeSegments() {
+        while (true) {
+            List<CorpusSegment> merged;
+            lock.readLock().lock();
+            try {
+                if (!open || mergeFactor < 2 || segments.size() < mergeFactor) {
+                    return;
+                }
+                Map<Integer, List<CorpusSegment>> tiers = new TreeMap<>();
+                for (CorpusSegment segment : segments) {
+                    tiers.computeIfAbsent(tierOf(segment), tier -> new ArrayList<>()).add(segment);
+                }
+                merged = tiers.values().stream()
+                        .filter(tier -> tier.size() >= mergeFactor)
+                        .findFirst()
+                        .map(tier -> tier.stream()
+                                .sorted(Comparator.comparingInt(CorpusSegment::getDocumentCount))
+                                .limit(mergeFactor)
+                                .toList())
+                        .orElse(null);
+                if (merged == null) {
+                    return;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            try {
+                CorpusSegment segment = merge(merged);
+                lock.writeLock().lock();
+                try {
+                    List<CorpusSegment> updated = new ArrayList<>(segments);
+                    updated.removeAll(merged);
+                    updated.add(segment);
+                    segments = List.copyOf(updated);
+                    // Tombstones of documents the merge dropped are no longer needed
+                    deleted = deleted.stream()
+                            .filter(id -> flushing.containsKey(id)
+                                    || updated.stream().anyMatch(live -> live.containsSubmission(id)))
+                            .collect(Collectors.toUnmodifiableSet());
+                    writeManifest();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                merged.forEach(CorpusSegment::retire);
+                log.info("Merged {} corpus segments into {} ({} documents)",
+                        merged.size(), segment.getPath().getFileName(), segment.getDocumentCount());
+            } catch (IOException e) {
+                log.error("Failed to merge corpus segments", e);
+                return;
+            }
+        }
+    }
+
+    private CorpusSegment merge(List<CorpusSegment> inputs) throws IOException {
+        List<Long> allIds = new ArrayList<>();
+        for (CorpusSegment segment : inputs) {
+            for (int ordinal = 0; ordinal < segment.getDocumentCount(); ordinal++) {
+                allIds.add(segment.getSubmissionId(ordinal));
+            }
+        }
+        Set<Long> live = new HashSet<>(liveSubmissions.apply(allIds));
+        live.removeAll(deleted);
+
+        // Renumber the surviving documents segment by segment
+        List<CorpusSegmentWriter.TermSource> sources = new ArrayList<>();
+        long[] submissionIds = new long[live.size()];
+        long[] assignmentIds = new long[live.size()];
+        CorpusSegment[] sourceSegments = new CorpusSegment[live.size()];
+        int[] sourceOrdinals = new int[live.size()];
+        int next = 0;
+        for (CorpusSegment segment : inputs) {
+            int[] newOrdinals = new int[segment.getDocumentCount()];
+            for (int ordinal = 0; ordinal < newOrdinals.length; ordinal++) {
+                if (live.contains(segment.getSubmissionId(ordinal))) {
+                    submissionIds[next] = segment.getSubmissionId(ordinal);
+                    assignmentIds[next] = segment.getAssignmentId(ordinal);
+                    sourceSegments[next] = segment;
+                    sourceOrdinals[next] = ordinal;
+                    newOrdinals[ordinal] = next++;
+                } else {
+                    newOrdinals[ordinal] = -1;
+                }
+            }
+            sources.add(CorpusSegmentWriter.segment(segment, newOrdinals));
+        }
+
+        Path file = nextSegmentPath();
+        CorpusSegmentWriter.write(file, TextFingerprint.VERSION,
+                Arrays.copyOf(submissionIds, next), Arrays.copyOf(assignmentIds, next), sources,
+                (ordinal, out) -> sourceSegments[ordinal].copyFingerprint(sourceOrdinals[ordinal], out));
+        return CorpusSegment.open(file);
+    }
+
+    private int tierOf(CorpusSegment segment) {
+        int tier = 0;
+        for (long size = Math.max(flushDocuments, 1) * (long) mergeFactor;
+             segment.getDocumentCount() >= size; size *= mergeFactor) {
+            tier++;
+        }
+        return tier;
+    }
+
+    private int countShared(long[] sortedHashes, long[] documentHashes) {
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < sortedHashes.length && j < documentHashes.length) {
+            if (sortedHashes[i] == documentHashes[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (sortedHashes[i] < documentHashes[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    private Path nextSegmentPath() {
+        return root.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, nextGeneration++, SEGMENT_SUFFIX));
+    }
+
+    private long generationOf(String fileName) {
+        try {
+            String digits = fileName.substring(SEGMENT_PREFIX.length());
+            int end = 0;
+            while (end < digits.length() && Character.isDigit(digits.charAt(end))) {
+                end++;
+            }
+            return end == 0 ? 0 : Long.parseLong(digits.substring(0, end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Caller holds the write lock
+    private void writeManifest() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("fingerprint-version", String.valueOf(TextFingerprint.VERSION));
+        properties.setProperty("segments", String.join(",",
+                segments.stream().map(segment -> segment.getPath().getFileName().toString()).toList()));
+        properties.setProperty("deleted", String.join(",", deleted.stream().map(String::valueOf).toList()));
+
+        Path temp = root.resolve(MANIFEST + ".tmp");
+        try (var writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Plagiarism corpus index");
+        }
+        try {
+            Files.move(temp, root.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, root.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.plagiarism.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable on-disk segment of the corpus index, memory-mapped as a whole so opening it
+ * only reads the header and lookups never copy the index onto the heap. Layout,
+ * big-endian, every section aligned to 8 bytes:
+ * <pre>
+ * header        magic, format, fingerprint version, document count (int each), term count,
+ *               posting count and the offsets of the sections below (long each)
+ * documents     document count x (submission id, assignment id)
+ * sorted ids    document count x submission id, ascending
+ * postings      posting count x document ordinal (int), grouped by term in dictionary order
+ * dictionary    (term count + 1) x (n-gram hash, first posting), sorted by hash; the last
+ *               entry only closes the posting range of the term before it
+ * fingerprints  one {@link MappedFingerprint} record per document
+ * offsets       (document count + 1) x position of each fingerprint record
+ * </pre>
+ */
+@Slf4j
+public class CorpusSegment implements AutoCloseable {
+
+    static final int MAGIC = 0x50435347; // "PCSG"
+    static final int FORMAT = 2;
+    static final int HEADER_BYTES = 4 * 4 + 7 * 8;
+    static final int DOCUMENT_BYTES = 16;
+    static final int DICTIONARY_ENTRY_BYTES = 16;
+
+    private final Path path;
+    private final MappedFile file;
+    private final int fingerprintVersion;
+    private final int documentCount;
+    private final long termCount;
+    private final long sortedIdsOffset;
+    private final long postingsOffset;
+    private final long dictionaryOffset;
+    private final long fingerprintOffsetsOffset;
+
+    // One for the index holding the segment plus one per query or merge reading it
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile boolean obsolete;
+
+    private CorpusSegment(Path path, MappedFile file) throws IOException {
+        this.path = path;
+        this.file = file;
+        if (file.size() < HEADER_BYTES || file.getInt(0) != MAGIC || file.getInt(4) != FORMAT) {
+            throw new IOException("Not a corpus segment of format " + FORMAT + ": " + path);
+        }
+        this.fingerprintVersion = file.getInt(8);
+        this.documentCount = file.getInt(12);
+        this.termCount = file.getLong(16);
+        // posting count at 24
+        this.sortedIdsOffset = file.getLong(32);
+        this.postingsOffset = file.getLong(40);
+        this.dictionaryOffset = file.getLong(48);
+        // fingerprint records start at 56
+        this.fingerprintOffsetsOffset = file.getLong(64);
+        if (fingerprintOffsetsOffset + 8L * (documentCount + 1) > file.size()) {
+            throw new IOException("Truncated corpus segment: " + path);
+        }
+    }
+
+    public static CorpusSegment open(Path path) throws IOException {
+        return new CorpusSegment(path, MappedFile.map(path));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getFingerprintVersion() {
+        return fingerprintVersion;
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public long getSubmissionId(int ordinal) {
+        return file.getLong(HEADER_BYTES + (long) ordinal * DOCUMENT_BYTES);
+    }
+
+    public long getAssignmentId(int ordinal) {
+        return file.getLong(HEADER_BYTES + (long) ordinal * DOCUMENT_BYTES + 8);
+    }
+
+    public MappedFingerprint getFingerprint(int ordinal) {
+        return new MappedFingerprint(file, fingerprintPosition(ordinal));
+    }
+
+    public boolean containsSubmission(long submissionId) {
+        int low = 0;
+        int high = documentCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = file.getLong(sortedIdsOffset + 8L * middle);
+            if (id < submissionId) {
+                low = middle + 1;
+            } else if (id > submissionId) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count, per document ordinal, how many of the given n-gram hashes the document contains
+     *
+     * @param sortedHashes distinct hashes in ascending order
+     */
+    public int[] countShared(long[] sortedHashes) {
+        int[] shared = new int[documentCount];
+        // Keys are sorted, so each search can start where the previous one ended
+        long low = 0;
+        for (long hash : sortedHashes) {
+            long high = termCount - 1;
+            while (low <= high) {
+                long middle = (low + high) >>> 1;
+                long middleHash = file.getLong(dictionaryOffset + middle * DICTIONARY_ENTRY_BYTES);
+                if (middleHash < hash) {
+                    low = middle + 1;
+                } else if (middleHash > hash) {
+                    high = middle - 1;
+                } else {
+                    long start = file.getLong(dictionaryOffset + middle * DICTIONARY_ENTRY_BYTES + 8);
+                    long end = file.getLong(dictionaryOffset + (middle + 1) * DICTIONARY_ENTRY_BYTES + 8);
+                    for (long posting = start; posting < end; posting++) {
+                        shared[file.getInt(postingsOffset + posting * 4)]++;
+                    }
+                    low = middle + 1;
+                    break;
+                }
+            }
+            if (low >= termCount) {
+                break;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Copy the stored fingerprint record of a document, e.g. into a merged segment
+     */
+    public void copyFingerprint(int ordinal, OutputStream out) throws IOException {
+        long position = fingerprintPosition(ordinal);
+        long remaining = fingerprintPosition(ordinal + 1) - position;
+        byte[] buffer = new byte[(int) Math.min(remaining, 1 << 16)];
+        while (remaining > 0) {
+            int count = (int) Math.min(remaining, buffer.length);
+            file.get(position, buffer, 0, count);
+            out.write(buffer, 0, count);
+            position += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Sequential reader over the terms of this segment, in hash order, for merging
+     */
+    public TermCursor cursor() {
+        return new TermCursor();
+    }
+
+    /**
+     * Take a reference for the duration of a read; pair with {@link #release()}
+     */
+    public void retain() {
+        references.incrementAndGet();
+    }
+
+    public void release() {
+        if (references.decrementAndGet() == 0 && obsolete) {
+            // The mapping itself is unmapped once it is garbage collected
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not delete corpus segment {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Drop the index's reference; the file is deleted once the last reader is done
+     */
+    public void retire() {
+        obsolete = true;
+        release();
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    private long fingerprintPosition(int ordinal) {
+        return file.getLong(fingerprintOffsetsOffset + 8L * ordinal);
+    }
+
+    public class TermCursor {
+        private long term = -1;
+
+        public CorpusSegment getSegment() {
+            return CorpusSegment.this;
+        }
+
+        /**
+         * Move to the next term; false once all terms were read
+         */
+        public boolean advance() {
+            return ++term < termCount;
+        }
+
+        public long hash() {
+            return file.getLong(dictionaryOffset + term * DICTIONARY_ENTRY_BYTES);
+        }
+
+        public void readPostings(IntConsumer ordinals) {
+            long start = file.getLong(dictionaryOffset + term * DICTIONARY_ENTRY_BYTES + 8);
+            long end = file.getLong(dictionaryOffset + (term + 1) * DICTIONARY_ENTRY_BYTES + 8);
+            for (long posting = start; posting < end; posting++) {
+                ordinals.accept(file.getInt(postingsOffset + posting * 4));
+            }
+        }
+    }
+}
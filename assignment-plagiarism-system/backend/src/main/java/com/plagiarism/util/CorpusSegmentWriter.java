@@ -0,0 +1,262 @@
+package com.plagiarism.util;
+
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes {@link CorpusSegment} files from term sources that each yield their n-gram
+ * hashes in ascending order. Sources are merged k-way, so a segment can be built from
+ * freshly indexed documents and from existing segments alike without holding the
+ * merged postings in memory. Fingerprint records are streamed after the dictionary.
+ */
+public final class CorpusSegmentWriter {
+
+    private CorpusSegmentWriter() {
+    }
+
+    /**
+     * Terms of one input, ascending by hash. Document ordinals must already be those of
+     * the output segment, and every source's ordinals must follow the previous source's.
+     */
+    public interface TermSource {
+        boolean advance() throws IOException;
+
+        long hash();
+
+        void readPostings(IntConsumer ordinals) throws IOException;
+    }
+
+    /**
+     * The n-gram hashes of a single document
+     */
+    public static TermSource document(int ordinal, long[] sortedHashes) {
+        return new TermSource() {
+            private int index = -1;
+
+            @Override
+            public boolean advance() {
+                return ++index < sortedHashes.length;
+            }
+
+            @Override
+            public long hash() {
+                return sortedHashes[index];
+            }
+
+            @Override
+            public void readPostings(IntConsumer ordinals) {
+                ordinals.accept(ordinal);
+            }
+        };
+    }
+
+    /**
+     * The terms of an existing segment, with its ordinals mapped through {@code newOrdinals};
+     * documents mapped to -1 are dropped
+     */
+    public static TermSource segment(CorpusSegment segment, int[] newOrdinals) {
+        CorpusSegment.TermCursor cursor = segment.cursor();
+        return new TermSource() {
+            @Override
+            public boolean advance() throws IOException {
+                return cursor.advance();
+            }
+
+            @Override
+            public long hash() {
+                return cursor.hash();
+            }
+
+            @Override
+            public void readPostings(IntConsumer ordinals) throws IOException {
+                cursor.readPostings(ordinal -> {
+                    int mapped = newOrdinals[ordinal];
+                    if (mapped >= 0) {
+                        ordinals.accept(mapped);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Writes the fingerprint record of an output document ordinal
+     */
+    @FunctionalInterface
+    public interface FingerprintSource {
+        void write(int ordinal, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Write a fingerprint as a {@link MappedFingerprint} record
+     */
+    public static void writeFingerprint(TextFingerprint fingerprint, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        long[] nGramHashes = fingerprint.getNGramHashes();
+        long[] termHashes = fingerprint.getTermHashes();
+        int[] termCounts = fingerprint.getTermCounts();
+
+        out.writeDouble(fingerprint.getNorm());
+        out.writeInt(nGramHashes.length);
+        out.writeInt(termHashes.length);
+        for (long hash : nGramHashes) {
+            out.writeLong(hash);
+        }
+        for (long hash : termHashes) {
+            out.writeLong(hash);
+        }
+        for (int count : termCounts) {
+            out.writeInt(count);
+        }
+        if (termCounts.length % 2 != 0) {
+            out.writeInt(0);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write a segment to {@code target}, which must not exist yet
+     *
+     * @param submissionIds submission id of each output document ordinal
+     * @param assignmentIds assignment id of each output document ordinal
+     */
+    public static void write(Path target, int fingerprintVersion, long[] submissionIds, long[] assignmentIds,
+                             List<TermSource> sources, FingerprintSource fingerprints) throws IOException {
+        Path dictionaryFile = target.resolveSibling(target.getFileName() + ".dict");
+        int documentCount = submissionIds.length;
+        long termCount = 0;
+        long postingCount;
+        long[] fingerprintOffsets = new long[documentCount + 1];
+
+        long sortedIdsOffset = CorpusSegment.HEADER_BYTES + (long) documentCount * CorpusSegment.DOCUMENT_BYTES;
+        long postingsOffset = sortedIdsOffset + 8L * documentCount;
+        long dictionaryOffset;
+        long fingerprintsOffset;
+        long fingerprintOffsetsOffset;
+
+        try {
+            try (CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(target, StandardOpenOption.CREATE_NEW), 1 << 16));
+                 DataOutputStream out = new DataOutputStream(counter);
+                 DataOutputStream dictionary = new DataOutputStream(new BufferedOutputStream(
+                         Files.newOutputStream(dictionaryFile), 1 << 16))) {
+                out.write(new byte[CorpusSegment.HEADER_BYTES]);
+                for (int i = 0; i < documentCount; i++) {
+                    out.writeLong(submissionIds[i]);
+                    out.writeLong(assignmentIds[i]);
+                }
+                long[] sortedIds = submissionIds.clone();
+                Arrays.sort(sortedIds);
+                for (long id : sortedIds) {
+                    out.writeLong(id);
+                }
+
+                // Ties on the hash go in source order so each posting list stays sorted by ordinal
+                PriorityQueue<Head> heads = new PriorityQueue<>(
+                        Comparator.comparingLong((Head head) -> head.source.hash()).thenComparingInt(head -> head.order));
+                for (int i = 0; i < sources.size(); i++) {
+                    if (sources.get(i).advance()) {
+                        heads.add(new Head(sources.get(i), i));
+                    }
+                }
+
+                long[] written = {0};
+                IntConsumer postingWriter = ordinal -> {
+                    try {
+                        out.writeInt(ordinal);
+                        written[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+
+                try {
+                    while (!heads.isEmpty()) {
+                        long hash = heads.peek().source.hash();
+                        long start = written[0];
+                        while (!heads.isEmpty() && heads.peek().source.hash() == hash) {
+                            Head head = heads.poll();
+                            head.source.readPostings(postingWriter);
+                            if (head.source.advance()) {
+                                heads.add(head);
+                            }
+                        }
+
+                        // Every document of the term may have been dropped by a merge
+                        if (written[0] > start) {
+                            dictionary.writeLong(hash);
+                            dictionary.writeLong(start);
+                            termCount++;
+                        }
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                postingCount = written[0];
+                if (postingCount % 2 != 0) {
+                    out.writeInt(0);
+                }
+                dictionary.writeLong(Long.MAX_VALUE);
+                dictionary.writeLong(postingCount);
+                dictionary.flush();
+
+                out.flush();
+                dictionaryOffset = counter.getByteCount();
+                Files.copy(dictionaryFile, out);
+                out.flush();
+
+                fingerprintsOffset = counter.getByteCount();
+                for (int i = 0; i < documentCount; i++) {
+                    fingerprintOffsets[i] = counter.getByteCount();
+                    fingerprints.write(i, out);
+                    out.flush();
+                }
+                fingerprintOffsets[documentCount] = counter.getByteCount();
+
+                fingerprintOffsetsOffset = counter.getByteCount();
+                for (long offset : fingerprintOffsets) {
+                    out.writeLong(offset);
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(CorpusSegment.HEADER_BYTES)
+                    .putInt(CorpusSegment.MAGIC)
+                    .putInt(CorpusSegment.FORMAT)
+                    .putInt(fingerprintVersion)
+                    .putInt(documentCount)
+                    .putLong(termCount)
+                    .putLong(postingCount)
+                    .putLong(sortedIdsOffset)
+                    .putLong(postingsOffset)
+                    .putLong(dictionaryOffset)
+                    .putLong(fingerprintsOffset)
+                    .putLong(fingerprintOffsetsOffset)
+                    .flip();
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        } finally {
+            Files.deleteIfExists(dictionaryFile);
+        }
+    }
+
+    private record Head(TermSource source, int order) {
+    }
+}
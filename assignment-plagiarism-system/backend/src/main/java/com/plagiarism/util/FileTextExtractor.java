@@ -1,50 +1,155 @@
 package com.plagiarism.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 @Slf4j
 @Component
 public class FileTextExtractor {
 
+    // Pages of a PDF that are read at most (0 = no limit)
+    @Value("${extraction.max-pages:500}")
+    private int maxPages = 500;
+
+    // Characters kept per file at most (0 = no limit)
+    @Value("${extraction.max-chars:2000000}")
+    private long maxChars = 2_000_000;
+
+    // Heap PDFBox may use per document before buffering to a temp file
+    @Value("${extraction.pdf.max-main-memory-bytes:16777216}")
+    private long pdfMaxMainMemoryBytes = 16 * 1024 * 1024;
+
+    /**
+     * Whether text can be extracted from a file of this name
+     */
+    public boolean isSupported(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        String name = fileName.toLowerCase();
+        return name.endsWith(".pdf") || name.endsWith(".txt") || name.endsWith(".docx");
+    }
+
     public String extractTextFromFile(String filePath) {
+        StringBuilderWriter text = new StringBuilderWriter();
+        extractTextFromFile(filePath, text);
+        return text.toString();
+    }
+
+    /**
+     * Stream the text of a file into a writer page by page, stopping at the configured
+     * page and character limits instead of materializing the whole document first
+     */
+    public void extractTextFromFile(String filePath, Writer out) {
         File file = new File(filePath);
         if (!file.exists()) {
             throw new IllegalArgumentException("File not found: " + filePath);
         }
 
         String fileName = file.getName().toLowerCase();
+        Writer limitedOut = maxChars > 0 ? new LimitedWriter(out, maxChars) : out;
 
         try {
             if (fileName.endsWith(".pdf")) {
-                return extractTextFromPdf(filePath);
+                extractTextFromPdf(file, limitedOut);
             } else if (fileName.endsWith(".txt")) {
-                return extractTextFromTxt(filePath);
+                extractTextFromTxt(filePath, limitedOut);
             } else if (fileName.endsWith(".docx")) {
                 // For DOCX, we can use Apache POI in the future
-                return extractTextFromTxt(filePath);
+                extractTextFromTxt(filePath, limitedOut);
             } else {
                 throw new IllegalArgumentException("Unsupported file format: " + fileName);
             }
+            limitedOut.flush();
+        } catch (LimitReachedException e) {
+            log.info("Stopped extracting {} after {} characters", filePath, maxChars);
         } catch (Exception e) {
             log.error("Error extracting text from file: " + filePath, e);
             throw new RuntimeException("Failed to extract text from file", e);
         }
     }
 
-    private String extractTextFromPdf(String filePath) throws IOException {
-        try (PDDocument document = PDDocument.load(new File(filePath))) {
+    private void extractTextFromPdf(File file, Writer out) throws IOException {
+        try (PDDocument document = PDDocument.load(file, MemoryUsageSetting.setupMixed(pdfMaxMainMemoryBytes))) {
             PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+            if (maxPages > 0 && document.getNumberOfPages() > maxPages) {
+                log.info("Extracting only the first {} of {} pages of {}",
+                        maxPages, document.getNumberOfPages(), file.getName());
+                stripper.setEndPage(maxPages);
+            }
+            // writeText emits each page to the writer as soon as it is stripped
+            stripper.writeText(document, out);
         }
     }
 
-    private String extractTextFromTxt(String filePath) throws IOException {
-        return new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(filePath)));
+    private void extractTextFromTxt(String filePath, Writer out) throws IOException {
+        try (Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(filePath)))) {
+            reader.transferTo(out);
+        }
+    }
+
+    /**
+     * Thrown by {@link LimitedWriter} to abort extraction once enough text was read
+     */
+    private static class LimitReachedException extends IOException {
+    }
+
+    /**
+     * Passes through at most {@code limit} characters, then aborts the extraction
+     */
+    private static class LimitedWriter extends Writer {
+        private final Writer out;
+        private final long limit;
+        private long written;
+
+        LimitedWriter(Writer out, long limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            int allowed = (int) Math.min(length, limit - written);
+            if (allowed > 0) {
+                out.write(buffer, offset, allowed);
+                written += allowed;
+            }
+            if (allowed < length) {
+                out.flush();
+                throw new LimitReachedException();
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            int allowed = (int) Math.min(length, limit - written);
+            if (allowed > 0) {
+                out.write(text, offset, allowed);
+                written += allowed;
+            }
+            if (allowed < length) {
+                out.flush();
+                throw new LimitReachedException();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
     }
 }
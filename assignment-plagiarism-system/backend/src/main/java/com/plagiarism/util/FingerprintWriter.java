@@ -0,0 +1,44 @@
+package com.plagiarism.util;
+
+import java.io.Writer;
+
+/**
+ * Writer that tokenizes everything written to it on the fly, so extracted text can be
+ * fingerprinted while it is streamed instead of after it has been collected
+ */
+public class FingerprintWriter extends Writer {
+
+    private final TextTokenizer.TokenHashBuffer tokenHashes = new TextTokenizer.TokenHashBuffer(1024);
+    private final TextTokenizer.Session session;
+
+    public FingerprintWriter(TextTokenizer tokenizer) {
+        this.session = tokenizer.session(tokenHashes, false);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+        session.feed(buffer, offset, length);
+    }
+
+    @Override
+    public void write(String text, int offset, int length) {
+        session.feed(text.subSequence(offset, offset + length));
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        session.finish();
+    }
+
+    /**
+     * Hashes of all tokens written so far, in order
+     */
+    public long[] getTokenHashes() {
+        session.finish();
+        return tokenHashes.toArray();
+    }
+}
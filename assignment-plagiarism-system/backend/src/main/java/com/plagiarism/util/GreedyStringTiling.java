@@ -0,0 +1,170 @@
+package com.plagiarism.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Greedy string tiling over token hashes with Karp-Rabin matching (Wise, RKR-GST).
+ * Repeatedly finds the longest runs shared by two token sequences that do not
+ * overlap runs found earlier, and marks them as tiles, until no run of at least
+ * the minimum length is left. Windows are looked up by rolling hash in a primitive
+ * index of the source built once, so each pass is close to linear in the length of
+ * both texts and allocates nothing per window.
+ */
+public final class GreedyStringTiling {
+
+    private static final long WINDOW_HASH_BASE = 0x100000001b3L;
+
+    private GreedyStringTiling() {
+    }
+
+    /**
+     * Tile {@code text} against {@code source}. Tokens of {@code text} already set in
+     * {@code textMarked} are treated as covered and are left out of new tiles; the
+     * tokens of every new tile are marked, so one array can be threaded through
+     * several sources to keep their tiles disjoint.
+     *
+     * @return tiles as {@code {textStart, sourceStart, length}}, longest first
+     */
+    public static List<int[]> tile(long[] text, boolean[] textMarked, long[] source, int minMatchLength) {
+        List<int[]> tiles = new ArrayList<>();
+        if (minMatchLength < 1 || text.length < minMatchLength || source.length < minMatchLength) {
+            return tiles;
+        }
+
+        long[] textWindows = windowHashes(text, minMatchLength);
+        WindowIndex sourceIndex = new WindowIndex(windowHashes(source, minMatchLength));
+        boolean[] sourceMarked = new boolean[source.length];
+
+        int maxMatch;
+        do {
+            maxMatch = minMatchLength;
+            List<int[]> matches = new ArrayList<>();
+
+            // Windows overlapping a tile are skipped; the index itself never changes
+            int[] sourceCovered = prefixCounts(sourceMarked);
+            int[] textCovered = prefixCounts(textMarked);
+            for (int p = 0; p < textWindows.length; p++) {
+                if (textCovered[p + minMatchLength] != textCovered[p]) {
+                    continue;
+                }
+                int hash = sourceIndex.find(textWindows[p]);
+                if (hash < 0) {
+                    continue;
+                }
+                for (int i = sourceIndex.offsets[hash]; i < sourceIndex.offsets[hash + 1]; i++) {
+                    int q = sourceIndex.positions[i];
+                    if (sourceCovered[q + minMatchLength] != sourceCovered[q]) {
+                        continue;
+                    }
+                    // Extend past the window; a hash collision simply yields a short run
+                    int length = 0;
+                    while (p + length < text.length && q + length < source.length
+                            && text[p + length] == source[q + length]
+                            && !textMarked[p + length] && !sourceMarked[q + length]) {
+                        length++;
+                    }
+                    if (length > maxMatch) {
+                        matches.clear();
+                        maxMatch = length;
+                    }
+                    if (length == maxMatch) {
+                        matches.add(new int[]{p, q, length});
+                    }
+                }
+            }
+
+            for (int[] match : matches) {
+                if (isUnmarked(textMarked, match[0], match[2]) && isUnmarked(sourceMarked, match[1], match[2])) {
+                    for (int i = 0; i < match[2]; i++) {
+                        textMarked[match[0] + i] = true;
+                        sourceMarked[match[1] + i] = true;
+                    }
+                    tiles.add(match);
+                }
+            }
+        } while (maxMatch > minMatchLength);
+
+        return tiles;
+    }
+
+    /**
+     * Window positions grouped by hash: the distinct hashes in ascending order and, for the
+     * i-th of them, its positions in ascending order at {@code positions[offsets[i]..offsets[i + 1])}
+     */
+    private static final class WindowIndex {
+        private final long[] hashes;
+        private final int[] offsets;
+        private final int[] positions;
+
+        WindowIndex(long[] windows) {
+            long[] sorted = windows.clone();
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            hashes = Arrays.copyOf(sorted, distinct);
+
+            // Counting sort of the positions by the rank of their hash keeps them ascending
+            int[] ranks = new int[windows.length];
+            offsets = new int[distinct + 1];
+            for (int q = 0; q < windows.length; q++) {
+                ranks[q] = Arrays.binarySearch(hashes, windows[q]);
+                offsets[ranks[q] + 1]++;
+            }
+            for (int i = 0; i < distinct; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            positions = new int[windows.length];
+            int[] next = Arrays.copyOf(offsets, distinct);
+            for (int q = 0; q < windows.length; q++) {
+                positions[next[ranks[q]]++] = q;
+            }
+        }
+
+        // Rank of a hash, or a negative number if no window has it
+        int find(long hash) {
+            return Arrays.binarySearch(hashes, hash);
+        }
+    }
+
+    private static long[] windowHashes(long[] tokens, int windowLength) {
+        long[] windows = new long[tokens.length - windowLength + 1];
+        long highestPower = 1;
+        for (int i = 1; i < windowLength; i++) {
+            highestPower *= WINDOW_HASH_BASE;
+        }
+
+        long hash = 0;
+        for (int i = 0; i < windowLength; i++) {
+            hash = hash * WINDOW_HASH_BASE + tokens[i];
+        }
+        windows[0] = hash;
+        for (int i = 1; i < windows.length; i++) {
+            hash = (hash - tokens[i - 1] * highestPower) * WINDOW_HASH_BASE + tokens[i + windowLength - 1];
+            windows[i] = hash;
+        }
+        return windows;
+    }
+
+    private static int[] prefixCounts(boolean[] marked) {
+        int[] counts = new int[marked.length + 1];
+        for (int i = 0; i < marked.length; i++) {
+            counts[i + 1] = counts[i] + (marked[i] ? 1 : 0);
+        }
+        return counts;
+    }
+
+    private static boolean isUnmarked(boolean[] marked, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (marked[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
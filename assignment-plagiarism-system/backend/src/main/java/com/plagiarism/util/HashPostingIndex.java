@@ -0,0 +1,304 @@
+package com.plagiarism.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-process inverted index from 64-bit keys to submission ids, kept per assignment.
+ * Used to narrow a plagiarism check down to the peers that actually share keys
+ * with the submission instead of scoring every submission in the assignment.
+ */
+@Slf4j
+public abstract class HashPostingIndex {
+
+    private final Map<Long, AssignmentIndex> indexes = new ConcurrentHashMap<>();
+
+    private static class AssignmentIndex {
+        private final PostingTable postings = new PostingTable();
+        private final Map<Long, long[]> documents = new HashMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Object loadLock = new Object();
+        private volatile boolean loaded;
+        private List<Change> pending; // changes made while the stored keys are read, replayed on top of them
+    }
+
+    // An added document, or a removed one if keys is null
+    private record Change(Long submissionId, long[] keys) {
+    }
+
+    /**
+     * Build the index of an assignment from its stored keys if it is not in memory yet.
+     * Changes made while the stored keys are read are applied on top of them, so a document
+     * added or removed during the load is neither lost nor resurrected.
+     */
+    public void ensureLoaded(Long assignmentId, Supplier<Map<Long, long[]>> keysBySubmission) {
+        AssignmentIndex index = indexes.computeIfAbsent(assignmentId, id -> new AssignmentIndex());
+        if (index.loaded) {
+            return;
+        }
+
+        synchronized (index.loadLock) {
+            if (index.loaded) {
+                return;
+            }
+            index.lock.writeLock().lock();
+            try {
+                index.pending = new ArrayList<>();
+            } finally {
+                index.lock.writeLock().unlock();
+            }
+
+            // Read without the lock, so changes made meanwhile are queued instead of blocked
+            Map<Long, long[]> stored;
+            try {
+                stored = keysBySubmission.get();
+            } catch (RuntimeException e) {
+                index.lock.writeLock().lock();
+                try {
+                    index.pending = null;
+                } finally {
+                    index.lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            index.lock.writeLock().lock();
+            try {
+                stored.forEach((submissionId, keys) -> addDocument(index, submissionId, keys));
+                index.pending.forEach(change -> apply(index, change));
+                index.pending = null;
+                index.loaded = true;
+                log.info("Built {} for assignment {} ({} submissions, {} keys)", getClass().getSimpleName(),
+                        assignmentId, index.documents.size(), index.postings.size());
+            } finally {
+                index.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Add or replace a submission in the index of its assignment
+     */
+    public void add(Long assignmentId, Long submissionId, long[] keys) {
+        change(assignmentId, new Change(submissionId, keys));
+    }
+
+    public void remove(Long assignmentId, Long submissionId) {
+        change(assignmentId, new Change(submissionId, null));
+    }
+
+    /**
+     * Find the submissions sharing at least {@code minShared} keys with the given ones
+     *
+     * @return number of shared keys keyed by submission id
+     */
+    public Map<Long, Integer> findCandidates(Long assignmentId, long[] keys, int minShared) {
+        AssignmentIndex index = indexes.get(assignmentId);
+        if (index == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, Integer> sharedCounts = new HashMap<>();
+        index.lock.readLock().lock();
+        try {
+            for (long key : keys) {
+                int slot = index.postings.find(key);
+                if (slot >= 0) {
+                    long[] submissionIds = index.postings.ids[slot];
+                    for (int i = 0; i < index.postings.sizes[slot]; i++) {
+                        sharedCounts.merge(submissionIds[i], 1, Integer::sum);
+                    }
+                }
+            }
+        } finally {
+            index.lock.readLock().unlock();
+        }
+
+        sharedCounts.values().removeIf(count -> count < minShared);
+        return sharedCounts;
+    }
+
+    // Until a load starts the database holds every change; during the load changes are queued
+    private void change(Long assignmentId, Change change) {
+        AssignmentIndex index = indexes.get(assignmentId);
+        if (index == null) {
+            return;
+        }
+
+        index.lock.writeLock().lock();
+        try {
+            if (index.loaded) {
+                apply(index, change);
+            } else if (index.pending != null) {
+                index.pending.add(change);
+            }
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(AssignmentIndex index, Change change) {
+        removeDocument(index, change.submissionId());
+        if (change.keys() != null) {
+            addDocument(index, change.submissionId(), change.keys());
+        }
+    }
+
+    private void addDocument(AssignmentIndex index, Long submissionId, long[] keys) {
+        long[] distinct = distinct(keys);
+        index.documents.put(submissionId, distinct);
+        for (long key : distinct) {
+            index.postings.add(key, submissionId);
+        }
+    }
+
+    private void removeDocument(AssignmentIndex index, Long submissionId) {
+        long[] keys = index.documents.remove(submissionId);
+        if (keys == null) {
+            return;
+        }
+        for (long key : keys) {
+            index.postings.remove(key, submissionId);
+        }
+    }
+
+    // N-gram hashes arrive sorted and distinct; anything else is sorted and deduplicated
+    private static long[] distinct(long[] keys) {
+        boolean sorted = true;
+        for (int i = 1; i < keys.length && sorted; i++) {
+            sorted = keys[i - 1] < keys[i];
+        }
+        if (sorted) {
+            return keys;
+        }
+
+        long[] copy = keys.clone();
+        Arrays.sort(copy);
+        int size = 0;
+        for (int i = 0; i < copy.length; i++) {
+            if (i == 0 || copy[i] != copy[i - 1]) {
+                copy[size++] = copy[i];
+            }
+        }
+        return Arrays.copyOf(copy, size);
+    }
+
+    /**
+     * Open-addressing hash table from a key to the ids of the submissions holding it, in
+     * primitive arrays so neither the keys nor the postings are boxed. Linear probing,
+     * with backward-shift deletion so no tombstones accumulate.
+     */
+    private static final class PostingTable {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private long[][] ids = new long[INITIAL_CAPACITY][]; // null marks a free slot
+        private int[] sizes = new int[INITIAL_CAPACITY];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        // Slot of a key, or -1 if no submission holds it
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = slotOf(key, mask); ids[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        void add(long key, long submissionId) {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = slotOf(key, mask);
+            while (ids[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (ids[slot] == null) {
+                keys[slot] = key;
+                ids[slot] = new long[2];
+                size++;
+            } else if (sizes[slot] == ids[slot].length) {
+                ids[slot] = Arrays.copyOf(ids[slot], sizes[slot] * 2);
+            }
+            ids[slot][sizes[slot]++] = submissionId;
+        }
+
+        void remove(long key, long submissionId) {
+            int slot = find(key);
+            if (slot < 0) {
+                return;
+            }
+            long[] submissionIds = ids[slot];
+            int count = sizes[slot];
+            for (int i = 0; i < count; i++) {
+                if (submissionIds[i] == submissionId) {
+                    submissionIds[i] = submissionIds[--count];
+                    sizes[slot] = count;
+                    break;
+                }
+            }
+            if (count == 0) {
+                delete(slot);
+            }
+        }
+
+        // Shift later entries of the probe run back, so lookups never stop at a hole
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            ids[slot] = null;
+            sizes[slot] = 0;
+            size--;
+            int hole = slot;
+            for (int next = (slot + 1) & mask; ids[next] != null; next = (next + 1) & mask) {
+                int home = slotOf(keys[next], mask);
+                // Move the entry if its home is not cyclically within (hole, next]
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    ids[hole] = ids[next];
+                    sizes[hole] = sizes[next];
+                    ids[next] = null;
+                    sizes[next] = 0;
+                    hole = next;
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[][] oldIds = ids;
+            int[] oldSizes = sizes;
+            keys = new long[capacity];
+            ids = new long[capacity][];
+            sizes = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldIds[i] != null) {
+                    int slot = slotOf(oldKeys[i], mask);
+                    while (ids[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    ids[slot] = oldIds[i];
+                    sizes[slot] = oldSizes[i];
+                }
+            }
+        }
+
+        private static int slotOf(long key, int mask) {
+            long mixed = key * 0x9e3779b97f4a7c15L;
+            return (int) (mixed ^ (mixed >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.plagiarism.util;
+
+import com.plagiarism.entity.PlagiarismResult;
+import com.plagiarism.entity.Submission;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Moves the id sequences of tables that used to take IDENTITY ids past the ids already
+ * in use. Hibernate creates the sequences (one-row tables on MySQL) starting at 1, so
+ * without this the first insert into an existing database would collide. Runs once the
+ * schema is up to date and before the web server accepts requests.
+ */
+@Slf4j
+@Component
+public class IdSequenceInitializer {
+
+    // allocationSize of the entity sequences; ids up to one block past the value may be handed out
+    private static final int ALLOCATION_SIZE = 50;
+
+    private static final Map<String, String> TABLES_BY_SEQUENCE = Map.of(
+            Submission.ID_SEQUENCE, "submissions",
+            PlagiarismResult.ID_SEQUENCE, "plagiarism_results");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+
+    public IdSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    @PostConstruct
+    public void initializeSequences() {
+        TABLES_BY_SEQUENCE.forEach(this::initializeSequence);
+    }
+
+    private void initializeSequence(String sequence, String table) {
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+        if (maxId == null) {
+            return;
+        }
+
+        long next = maxId + ALLOCATION_SIZE + 1;
+        if (dialect.getSequenceSupport().supportsSequences()) {
+            Long current = jdbcTemplate.queryForObject(
+                    dialect.getSequenceSupport().getSequenceNextValString(sequence), Long.class);
+            if (current != null && current < next) {
+                jdbcTemplate.execute("alter sequence " + sequence + " restart with " + next);
+                log.info("Moved sequence {} past the ids in {} to {}", sequence, table, next);
+            }
+        } else if (jdbcTemplate.update("update " + sequence + " set next_val = ? where next_val < ?", next, next) > 0) {
+            log.info("Moved sequence table {} past the ids in {} to {}", sequence, table, next);
+        }
+    }
+}
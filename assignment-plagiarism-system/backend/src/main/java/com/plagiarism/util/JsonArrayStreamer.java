@@ -0,0 +1,52 @@
+package com.plagiarism.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a repository {@link Stream} to the response as a JSON array, one element at a
+ * time, so a listing never has to be held in memory. The stream is consumed inside a
+ * read-only transaction because the response is written after the controller returns.
+ */
+@Component
+public class JsonArrayStreamer {
+
+    /**
+     * Rows fetched per round trip by the streaming repository queries
+     */
+    public static final String FETCH_SIZE = "500";
+
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public JsonArrayStreamer(ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public <T> StreamingResponseBody stream(Supplier<Stream<T>> query) {
+        return out -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<T> items = query.get();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                for (T item : (Iterable<T>) items::iterator) {
+                    generator.writeObject(item);
+                }
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.plagiarism.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory mapping of a whole file of any size. The file is mapped in chunks
+ * of {@link #CHUNK_BYTES}, the most a single {@link MappedByteBuffer} can address.
+ * Values are expected at offsets aligned to their size, so none straddles two chunks.
+ * The mapping lives outside the heap and stays valid until it is garbage collected.
+ */
+public final class MappedFile {
+
+    private static final int CHUNK_BITS = 30;
+    static final long CHUNK_BYTES = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_BYTES - 1;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private MappedFile(MappedByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static MappedFile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_BYTES - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long position = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_BYTES, size - position));
+            }
+            return new MappedFile(chunks, size);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long getLong(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & CHUNK_MASK));
+    }
+
+    public int getInt(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & CHUNK_MASK));
+    }
+
+    public double getDouble(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].getDouble((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Copy {@code length} bytes starting at {@code position} into {@code target}
+     */
+    public void get(long position, byte[] target, int offset, int length) {
+        while (length > 0) {
+            int chunk = (int) (position >>> CHUNK_BITS);
+            int chunkOffset = (int) (position & CHUNK_MASK);
+            int count = Math.min(length, chunks[chunk].limit() - chunkOffset);
+            chunks[chunk].get(chunkOffset, target, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+}
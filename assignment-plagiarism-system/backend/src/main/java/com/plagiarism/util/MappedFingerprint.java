@@ -0,0 +1,60 @@
+package com.plagiarism.util;
+
+/**
+ * View of a fingerprint stored in a memory-mapped corpus segment. Values are read from
+ * the mapping on access, so scoring against it copies nothing onto the heap. Record layout:
+ * norm (double), n-gram count, term count (int each), sorted n-gram hashes, sorted term
+ * hashes (long each), term counts (int each), padded to 8 bytes.
+ */
+public final class MappedFingerprint {
+
+    static final int HEADER_BYTES = 16;
+
+    private final MappedFile file;
+    private final long position;
+    private final int nGramCount;
+    private final int termCount;
+
+    MappedFingerprint(MappedFile file, long position) {
+        this.file = file;
+        this.position = position;
+        this.nGramCount = file.getInt(position + 8);
+        this.termCount = file.getInt(position + 12);
+    }
+
+    /**
+     * Bytes taken by the record of a fingerprint, including padding
+     */
+    static long recordBytes(int nGramCount, int termCount) {
+        long bytes = HEADER_BYTES + 8L * nGramCount + 8L * termCount + 4L * termCount;
+        return (bytes + 7) & ~7L;
+    }
+
+    public boolean isEmpty() {
+        return nGramCount == 0;
+    }
+
+    public double getNorm() {
+        return file.getDouble(position);
+    }
+
+    public int getNGramCount() {
+        return nGramCount;
+    }
+
+    public long getNGramHash(int index) {
+        return file.getLong(position + HEADER_BYTES + 8L * index);
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    public long getTermHash(int index) {
+        return file.getLong(position + HEADER_BYTES + 8L * nGramCount + 8L * index);
+    }
+
+    public int getTermFrequency(int index) {
+        return file.getInt(position + HEADER_BYTES + 8L * nGramCount + 8L * termCount + 4L * index);
+    }
+}
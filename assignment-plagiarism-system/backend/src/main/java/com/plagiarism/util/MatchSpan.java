@@ -0,0 +1,17 @@
+package com.plagiarism.util;
+
+/**
+ * A maximal run of tokens shared between a checked text and one source submission.
+ * Positions are token indexes into the normalized token sequences of both texts.
+ *
+ * @param sourceSubmissionId submission the run was found in, or null if not attributed
+ * @param start              index of the first matching token in the checked text
+ * @param sourceStart        index of the first matching token in the source text
+ * @param length             number of matching tokens
+ */
+public record MatchSpan(Long sourceSubmissionId, int start, int sourceStart, int length) {
+
+    public int end() {
+        return start + length;
+    }
+}
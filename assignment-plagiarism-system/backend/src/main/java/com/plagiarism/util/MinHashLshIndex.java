@@ -0,0 +1,12 @@
+package com.plagiarism.util;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Locality-sensitive hash buckets of MinHash signature bands. Two submissions
+ * land in a common bucket when one full band of their signatures agrees, which
+ * makes near-duplicates likely candidates regardless of assignment size.
+ */
+@Component
+public class MinHashLshIndex extends HashPostingIndex {
+}
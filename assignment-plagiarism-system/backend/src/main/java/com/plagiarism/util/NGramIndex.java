@@ -0,0 +1,10 @@
+package com.plagiarism.util;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Inverted index from hashed word n-grams to the submissions containing them
+ */
+@Component
+public class NGramIndex extends HashPostingIndex {
+}
@@ -4,13 +4,24 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class PlagiarismDetectionEngine {
 
     private static final int N_GRAM_SIZE = 3;
+    private static final long N_GRAM_HASH_BASE = 0x100000001b3L;
+
+    private final TextTokenizer tokenizer = new TextTokenizer();
+
+    // 128 MinHash values split into 32 bands of 4 rows: pairs with a Jaccard
+    // similarity above roughly 0.4 share at least one LSH bucket with high probability
+    public static final int MINHASH_SIZE = 128;
+    public static final int LSH_BANDS = 32;
+    private static final int LSH_ROWS = MINHASH_SIZE / LSH_BANDS;
+
+    // Shortest run of shared tokens reported as a similar section
+    public static final int DEFAULT_MIN_MATCH_TOKENS = 8;
 
     /**
      * Calculate similarity between two texts using cosine similarity
@@ -20,142 +31,381 @@ public class PlagiarismDetectionEngine {
             return 0.0;
         }
 
-        // Normalize texts
-        text1 = normalizeText(text1);
-        text2 = normalizeText(text2);
+        return calculateSimilarity(createFingerprint(text1, false), createFingerprint(text2, false));
+    }
 
-        // Get n-grams
-        Set<String> nGrams1 = generateNGrams(text1, N_GRAM_SIZE);
-        Set<String> nGrams2 = generateNGrams(text2, N_GRAM_SIZE);
+    /**
+     * Build a fingerprint of a text so it can be compared repeatedly
+     * without being tokenized again
+     */
+    public TextFingerprint createFingerprint(String text) {
+        return createFingerprint(text, true);
+    }
 
-        if (nGrams1.isEmpty() || nGrams2.isEmpty()) {
-            return 0.0;
+    /**
+     * Build a fingerprint from token hashes that were already produced while streaming the text
+     */
+    public TextFingerprint createFingerprint(long[] tokenHashes) {
+        return createFingerprint(tokenHashes, true);
+    }
+
+    /**
+     * Writer that tokenizes text as it is written, for {@link #createFingerprint(long[])}
+     */
+    public FingerprintWriter fingerprintWriter() {
+        return new FingerprintWriter(tokenizer);
+    }
+
+    private TextFingerprint createFingerprint(String text, boolean withSignature) {
+        if (text == null || text.isEmpty()) {
+            return new TextFingerprint(new long[0], new long[0], new int[0], 0.0, new int[0]);
         }
+        return createFingerprint(tokenizer.hashTokens(text), withSignature);
+    }
 
-        // Calculate intersection and union
-        Set<String> intersection = new HashSet<>(nGrams1);
-        intersection.retainAll(nGrams2);
+    private TextFingerprint createFingerprint(long[] tokenHashes, boolean withSignature) {
+        long[] nGramHashes = hashNGrams(tokenHashes, N_GRAM_SIZE);
 
-        Set<String> union = new HashSet<>(nGrams1);
-        union.addAll(nGrams2);
+        // Term frequencies are the run lengths of the sorted token hashes
+        long[] sortedTokens = tokenHashes.clone();
+        Arrays.sort(sortedTokens);
+        int distinctTerms = 0;
+        for (int i = 0; i < sortedTokens.length; i++) {
+            if (i == 0 || sortedTokens[i] != sortedTokens[i - 1]) {
+                distinctTerms++;
+            }
+        }
 
-        // Jaccard similarity
-        double jaccardSimilarity = (double) intersection.size() / union.size();
+        long[] termHashes = new long[distinctTerms];
+        int[] termCounts = new int[distinctTerms];
+        int term = -1;
+        for (int i = 0; i < sortedTokens.length; i++) {
+            if (i == 0 || sortedTokens[i] != sortedTokens[i - 1]) {
+                termHashes[++term] = sortedTokens[i];
+            }
+            termCounts[term]++;
+        }
 
-        // Cosine similarity based on token frequency
-        double cosineSimilarity = calculateCosineSimilarity(text1, text2);
+        double squaredNorm = 0.0;
+        for (int count : termCounts) {
+            squaredNorm += (double) count * count;
+        }
 
-        // Combine both metrics for more accurate result
-        return (jaccardSimilarity * 0.4 + cosineSimilarity * 0.6) * 100;
+        int[] signature = withSignature ? computeMinHashSignature(nGramHashes) : new int[0];
+        return new TextFingerprint(nGramHashes, termHashes, termCounts, Math.sqrt(squaredNorm), signature);
     }
 
     /**
-     * Generate n-grams from text
+     * Compute a fixed-size MinHash signature over a set of n-gram hashes.
+     * Each position keeps the minimum of an independent hash permutation, so the
+     * fraction of equal positions between two signatures estimates their Jaccard similarity.
      */
-    private Set<String> generateNGrams(String text, int n) {
-        String[] words = text.split("\\s+");
-        Set<String> nGrams = new HashSet<>();
+    public int[] computeMinHashSignature(long[] nGramHashes) {
+        if (nGramHashes.length == 0) {
+            return new int[0];
+        }
 
-        for (int i = 0; i <= words.length - n; i++) {
-            StringBuilder nGram = new StringBuilder();
-            for (int j = i; j < i + n; j++) {
-                if (j > i) nGram.append(" ");
-                nGram.append(words[j]);
+        long[] minimums = new long[MINHASH_SIZE];
+        Arrays.fill(minimums, Long.MAX_VALUE);
+        for (long hash : nGramHashes) {
+            for (int i = 0; i < MINHASH_SIZE; i++) {
+                long permuted = mix64(hash + (i + 1) * 0x9e3779b97f4a7c15L);
+                if (permuted < minimums[i]) {
+                    minimums[i] = permuted;
+                }
             }
-            nGrams.add(nGram.toString());
         }
 
-        return nGrams;
+        int[] signature = new int[MINHASH_SIZE];
+        for (int i = 0; i < MINHASH_SIZE; i++) {
+            signature[i] = (int) (minimums[i] ^ (minimums[i] >>> 32));
+        }
+        return signature;
     }
 
     /**
-     * Calculate cosine similarity based on term frequencies
+     * Hash each band of a MinHash signature into an LSH bucket key
      */
-    private double calculateCosineSimilarity(String text1, String text2) {
-        Map<String, Integer> vector1 = getTermFrequencyVector(text1);
-        Map<String, Integer> vector2 = getTermFrequencyVector(text2);
+    public long[] computeLshBucketKeys(int[] signature) {
+        if (signature.length != MINHASH_SIZE) {
+            return new long[0];
+        }
 
-        double dotProduct = 0.0;
-        for (String term : vector1.keySet()) {
-            if (vector2.containsKey(term)) {
-                dotProduct += vector1.get(term) * vector2.get(term);
+        long[] bucketKeys = new long[LSH_BANDS];
+        for (int band = 0; band < LSH_BANDS; band++) {
+            long key = band;
+            for (int row = 0; row < LSH_ROWS; row++) {
+                key = mix64(key * 31 + signature[band * LSH_ROWS + row]);
             }
+            bucketKeys[band] = key;
         }
+        return bucketKeys;
+    }
 
-        double magnitude1 = Math.sqrt(vector1.values().stream()
-                .mapToDouble(v -> v * v).sum());
-        double magnitude2 = Math.sqrt(vector2.values().stream()
-                .mapToDouble(v -> v * v).sum());
+    /**
+     * SplitMix64 finalizer, used to derive independent hash permutations
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
 
-        if (magnitude1 == 0 || magnitude2 == 0) {
+    /**
+     * Calculate similarity between two precomputed fingerprints.
+     * Uses the same Jaccard/cosine weighting as {@link #calculateSimilarity(String, String)}.
+     */
+    public double calculateSimilarity(TextFingerprint fingerprint1, TextFingerprint fingerprint2) {
+        if (fingerprint1.isEmpty() || fingerprint2.isEmpty()) {
             return 0.0;
         }
 
-        return dotProduct / (magnitude1 * magnitude2);
+        long[] nGrams1 = fingerprint1.getNGramHashes();
+        long[] nGrams2 = fingerprint2.getNGramHashes();
+
+        // Both arrays are sorted, so the intersection is a single merge pass
+        int intersection = 0;
+        int i = 0, j = 0;
+        while (i < nGrams1.length && j < nGrams2.length) {
+            if (nGrams1[i] == nGrams2[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (nGrams1[i] < nGrams2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = nGrams1.length + nGrams2.length - intersection;
+
+        double jaccardSimilarity = (double) intersection / union;
+        double cosineSimilarity = calculateCosineSimilarity(fingerprint1, fingerprint2);
+
+        return (jaccardSimilarity * 0.4 + cosineSimilarity * 0.6) * 100;
     }
 
     /**
-     * Get term frequency vector for a text
+     * Calculate similarity against a fingerprint stored in a memory-mapped corpus segment,
+     * reading it in place. Gives the same score as {@link #calculateSimilarity(TextFingerprint, TextFingerprint)}.
      */
-    private Map<String, Integer> getTermFrequencyVector(String text) {
-        String[] words = text.split("\\s+");
-        Map<String, Integer> termFrequency = new HashMap<>();
+    public double calculateSimilarity(TextFingerprint fingerprint1, MappedFingerprint fingerprint2) {
+        if (fingerprint1.isEmpty() || fingerprint2.isEmpty()) {
+            return 0.0;
+        }
 
-        for (String word : words) {
-            if (!word.isEmpty()) {
-                termFrequency.put(word, termFrequency.getOrDefault(word, 0) + 1);
+        long[] nGrams1 = fingerprint1.getNGramHashes();
+        int count2 = fingerprint2.getNGramCount();
+
+        int intersection = 0;
+        int i = 0, j = 0;
+        while (i < nGrams1.length && j < count2) {
+            long hash2 = fingerprint2.getNGramHash(j);
+            if (nGrams1[i] == hash2) {
+                intersection++;
+                i++;
+                j++;
+            } else if (nGrams1[i] < hash2) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = nGrams1.length + count2 - intersection;
+
+        double jaccardSimilarity = (double) intersection / union;
+        double cosineSimilarity = 0.0;
+        if (fingerprint1.getNorm() != 0 && fingerprint2.getNorm() != 0) {
+            long[] terms1 = fingerprint1.getTermHashes();
+            int[] counts1 = fingerprint1.getTermCounts();
+            int termCount2 = fingerprint2.getTermCount();
+
+            double dotProduct = 0.0;
+            i = 0;
+            j = 0;
+            while (i < terms1.length && j < termCount2) {
+                long term2 = fingerprint2.getTermHash(j);
+                if (terms1[i] == term2) {
+                    dotProduct += (double) counts1[i] * fingerprint2.getTermFrequency(j);
+                    i++;
+                    j++;
+                } else if (terms1[i] < term2) {
+                    i++;
+                } else {
+                    j++;
+                }
             }
+            cosineSimilarity = dotProduct / (fingerprint1.getNorm() * fingerprint2.getNorm());
         }
 
-        return termFrequency;
+        return (jaccardSimilarity * 0.4 + cosineSimilarity * 0.6) * 100;
     }
 
     /**
-     * Normalize text for comparison
+     * Hash every run of {@code n} consecutive tokens with a polynomial rolling hash,
+     * so no n-gram string is ever built. Returns the sorted distinct hashes.
      */
-    private String normalizeText(String text) {
-        return text
-                .toLowerCase()
-                .replaceAll("[^a-z0-9\\s]", "") // Remove special characters
-                .replaceAll("\\s+", " ") // Remove extra whitespace
-                .trim();
+    private long[] hashNGrams(long[] tokenHashes, int n) {
+        int count = tokenHashes.length - n + 1;
+        if (count <= 0) {
+            return new long[0];
+        }
+
+        long leadingPower = 1;
+        for (int i = 1; i < n; i++) {
+            leadingPower *= N_GRAM_HASH_BASE;
+        }
+
+        long[] nGramHashes = new long[count];
+        long rolling = 0;
+        for (int i = 0; i < n; i++) {
+            rolling = rolling * N_GRAM_HASH_BASE + tokenHashes[i];
+        }
+        nGramHashes[0] = mix64(rolling);
+        for (int i = 1; i < count; i++) {
+            rolling = (rolling - tokenHashes[i - 1] * leadingPower) * N_GRAM_HASH_BASE + tokenHashes[i + n - 1];
+            nGramHashes[i] = mix64(rolling);
+        }
+
+        Arrays.sort(nGramHashes);
+        int distinct = 0;
+        for (int i = 0; i < nGramHashes.length; i++) {
+            if (i == 0 || nGramHashes[i] != nGramHashes[distinct - 1]) {
+                nGramHashes[distinct++] = nGramHashes[i];
+            }
+        }
+        return distinct == nGramHashes.length ? nGramHashes : Arrays.copyOf(nGramHashes, distinct);
+    }
+
+    /**
+     * Calculate cosine similarity between two hashed term vectors
+     */
+    private double calculateCosineSimilarity(TextFingerprint fingerprint1, TextFingerprint fingerprint2) {
+        if (fingerprint1.getNorm() == 0 || fingerprint2.getNorm() == 0) {
+            return 0.0;
+        }
+
+        long[] terms1 = fingerprint1.getTermHashes();
+        long[] terms2 = fingerprint2.getTermHashes();
+        int[] counts1 = fingerprint1.getTermCounts();
+        int[] counts2 = fingerprint2.getTermCounts();
+
+        double dotProduct = 0.0;
+        int i = 0, j = 0;
+        while (i < terms1.length && j < terms2.length) {
+            if (terms1[i] == terms2[j]) {
+                dotProduct += (double) counts1[i] * counts2[j];
+                i++;
+                j++;
+            } else if (terms1[i] < terms2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+
+        return dotProduct / (fingerprint1.getNorm() * fingerprint2.getNorm());
+    }
+
+    /**
+     * Locate the maximal token runs of at least {@code minMatchLength} tokens that a text shares
+     * with its sources. Sources are tiled in iteration order and every token is attributed to
+     * the first source covering it, so callers should pass the most similar peers first.
+     */
+    public List<MatchSpan> findMatchSpans(long[] tokenHashes, Map<Long, long[]> sourceTokenHashes,
+                                          int minMatchLength) {
+        boolean[] covered = new boolean[tokenHashes.length];
+        List<MatchSpan> spans = new ArrayList<>();
+        sourceTokenHashes.forEach((sourceId, source) -> {
+            for (int[] tile : GreedyStringTiling.tile(tokenHashes, covered, source, minMatchLength)) {
+                spans.add(new MatchSpan(sourceId, tile[0], tile[1], tile[2]));
+            }
+        });
+        spans.sort(Comparator.comparingInt(MatchSpan::start));
+        return spans;
     }
 
     /**
      * Find and highlight similar sections between two texts
      */
     public String highlightSimilarSections(String originalText, String comparisonText) {
-        String[] originalWords = normalizeText(originalText).split("\\s+");
-        String[] comparisonWords = normalizeText(comparisonText).split("\\s+");
+        return highlightSimilarSections(originalText, Collections.singletonMap(null, comparisonText),
+                DEFAULT_MIN_MATCH_TOKENS);
+    }
 
-        Set<String> comparisonSet = new HashSet<>(Arrays.asList(comparisonWords));
+    /**
+     * Highlight the runs of a text found in its sources, keyed by submission id and ordered
+     * most similar first. Each run is wrapped as {@code [SIMILAR#<sourceId>:...]}.
+     */
+    public String highlightSimilarSections(String originalText, Map<Long, String> sourceTexts,
+                                           int minMatchLength) {
+        List<String> words = new ArrayList<>();
+        TextTokenizer.TokenHashBuffer hashes = new TextTokenizer.TokenHashBuffer(
+                Math.max(16, originalText.length() / 6));
+        tokenizer.tokenize(originalText, (hash, word) -> {
+            hashes.accept(hash, word);
+            words.add(word.toString());
+        });
+
+        Map<Long, long[]> sourceTokenHashes = new LinkedHashMap<>();
+        sourceTexts.forEach((sourceId, text) -> sourceTokenHashes.put(sourceId, tokenizer.hashTokens(text)));
 
         StringBuilder highlighted = new StringBuilder();
-        for (int i = 0; i < originalWords.length; i++) {
-            if (i > 0) highlighted.append(" ");
-            
-            if (comparisonSet.contains(originalWords[i])) {
-                highlighted.append("[SIMILAR:").append(originalWords[i]).append("]");
-            } else {
-                highlighted.append(originalWords[i]);
-            }
+        int next = 0;
+        for (MatchSpan span : findMatchSpans(hashes.toArray(), sourceTokenHashes, minMatchLength)) {
+            appendWords(highlighted, words, next, span.start());
+            if (!highlighted.isEmpty()) highlighted.append(" ");
+            highlighted.append(span.sourceSubmissionId() == null
+                    ? "[SIMILAR:"
+                    : "[SIMILAR#" + span.sourceSubmissionId() + ":");
+            highlighted.append(String.join(" ", words.subList(span.start(), span.end()))).append("]");
+            next = span.end();
         }
+        appendWords(highlighted, words, next, words.size());
 
         return highlighted.toString();
     }
 
+    private void appendWords(StringBuilder out, List<String> words, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!out.isEmpty()) out.append(" ");
+            out.append(words.get(i));
+        }
+    }
+
     /**
      * Calculate similarity with multiple texts and return detailed report
      */
     public Map<String, Object> calculateDetailedSimilarity(String submissionText, List<String> comparisonTexts) {
-        Map<String, Object> result = new HashMap<>();
-        List<Double> scores = new ArrayList<>();
+        List<TextFingerprint> comparisonFingerprints = new ArrayList<>();
+        for (String comparisonText : comparisonTexts) {
+            comparisonFingerprints.add(createFingerprint(comparisonText, false));
+        }
+        return calculateDetailedSimilarity(createFingerprint(submissionText, false), comparisonFingerprints);
+    }
+
+    /**
+     * Calculate similarity against multiple precomputed fingerprints and return detailed report
+     */
+    public Map<String, Object> calculateDetailedSimilarity(TextFingerprint submission,
+                                                           List<TextFingerprint> comparisons) {
+        return calculateDetailedSimilarity(submission, comparisons, comparisons.size());
+    }
+
+    /**
+     * Calculate similarity against a pre-selected subset of candidates out of
+     * {@code totalComparisons} peers. Peers that were not selected score zero.
+     */
+    public Map<String, Object> calculateDetailedSimilarity(TextFingerprint submission,
+                                                           List<TextFingerprint> comparisons,
+                                                           int totalComparisons) {
+        double scoreSum = 0;
         double maxScore = 0;
         int matchCount = 0;
 
-        for (String comparisonText : comparisonTexts) {
-            double similarity = calculateSimilarity(submissionText, comparisonText);
-            scores.add(similarity);
+        for (TextFingerprint comparison : comparisons) {
+            double similarity = calculateSimilarity(submission, comparison);
+            scoreSum += similarity;
 
             if (similarity > 0) {
                 matchCount++;
@@ -165,13 +415,23 @@ public class PlagiarismDetectionEngine {
             }
         }
 
-        double averageScore = scores.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        return buildSimilarityReport(scoreSum, maxScore, matchCount, Math.max(totalComparisons, comparisons.size()));
+    }
+
+    /**
+     * Build the detailed similarity report from aggregated pairwise scores
+     */
+    public Map<String, Object> buildSimilarityReport(double scoreSum, double maxScore, int matchCount,
+                                                     int totalComparisons) {
+        Map<String, Object> result = new HashMap<>();
+        double averageScore = totalComparisons == 0 ? 0.0 : scoreSum / totalComparisons;
 
         result.put("similarityScore", Math.round(averageScore * 100.0) / 100.0);
         result.put("maxScore", Math.round(maxScore * 100.0) / 100.0);
         result.put("averageScore", Math.round(averageScore * 100.0) / 100.0);
-        result.put("totalComparisons", comparisonTexts.size());
+        result.put("totalComparisons", totalComparisons);
         result.put("matchedComparisons", matchCount);
+        result.put("scoreSum", scoreSum);
 
         return result;
     }
@@ -0,0 +1,92 @@
+package com.plagiarism.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compact, comparison-ready representation of a submission's text.
+ * Holds the sorted distinct 64-bit hashes of its word n-grams, a hashed
+ * term-frequency vector with its precomputed norm, and a MinHash signature
+ * of the n-gram set used for locality-sensitive candidate lookup.
+ */
+@Getter
+@AllArgsConstructor
+public class TextFingerprint {
+
+    /**
+     * Bumped whenever the hashing or tokenization scheme changes so that
+     * stored fingerprints can be recognised as stale and recomputed.
+     */
+    public static final int VERSION = 3;
+
+    private final long[] nGramHashes; // sorted, distinct
+    private final long[] termHashes;  // sorted, distinct
+    private final int[] termCounts;   // parallel to termHashes
+    private final double norm;
+    private final int[] minHashSignature; // empty when there are no n-grams
+
+    public boolean isEmpty() {
+        return nGramHashes.length == 0;
+    }
+
+    public static byte[] encodeHashes(long[] hashes) {
+        ByteBuffer buffer = ByteBuffer.allocate(hashes.length * Long.BYTES);
+        buffer.asLongBuffer().put(hashes);
+        return buffer.array();
+    }
+
+    public static long[] decodeHashes(byte[] data) {
+        if (data == null) {
+            return new long[0];
+        }
+        long[] hashes = new long[data.length / Long.BYTES];
+        ByteBuffer.wrap(data).asLongBuffer().get(hashes);
+        return hashes;
+    }
+
+    /**
+     * Encode the term vector as (hash, count) pairs
+     */
+    public static byte[] encodeTermVector(long[] termHashes, int[] termCounts) {
+        ByteBuffer buffer = ByteBuffer.allocate(termHashes.length * (Long.BYTES + Integer.BYTES));
+        for (int i = 0; i < termHashes.length; i++) {
+            buffer.putLong(termHashes[i]);
+            buffer.putInt(termCounts[i]);
+        }
+        return buffer.array();
+    }
+
+    public static byte[] encodeSignature(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    public static int[] decodeSignature(byte[] data) {
+        if (data == null) {
+            return new int[0];
+        }
+        int[] signature = new int[data.length / Integer.BYTES];
+        ByteBuffer.wrap(data).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    public static TextFingerprint decode(byte[] nGramData, byte[] termVectorData, double norm, byte[] signatureData) {
+        long[] nGramHashes = decodeHashes(nGramData);
+
+        int terms = termVectorData == null ? 0 : termVectorData.length / (Long.BYTES + Integer.BYTES);
+        long[] termHashes = new long[terms];
+        int[] termCounts = new int[terms];
+        if (terms > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(termVectorData);
+            for (int i = 0; i < terms; i++) {
+                termHashes[i] = buffer.getLong();
+                termCounts[i] = buffer.getInt();
+            }
+        }
+
+        return new TextFingerprint(nGramHashes, termHashes, termCounts, norm, decodeSignature(signatureData));
+    }
+}
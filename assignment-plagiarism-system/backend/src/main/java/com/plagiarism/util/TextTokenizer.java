@@ -0,0 +1,153 @@
+package com.plagiarism.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass tokenizer shared by fingerprinting, term vectors and highlighting.
+ * Walks the characters once and produces the same tokens as lower-casing the text,
+ * stripping everything but {@code [a-z0-9]} and splitting on whitespace, without
+ * allocating any intermediate copies of the text.
+ */
+public class TextTokenizer {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Receives each normalized token with its 64-bit FNV-1a hash. The token
+     * sequence is only valid during the call; it is reused for the next token.
+     */
+    @FunctionalInterface
+    public interface TokenConsumer {
+        void accept(long hash, CharSequence token);
+    }
+
+    /**
+     * Incremental tokenizer state, so text can be fed in chunks as it is extracted
+     */
+    public static class Session {
+        private final TokenConsumer consumer;
+        private final StringBuilder token;
+        private long hash = FNV_OFFSET_BASIS;
+        private int length;
+
+        private Session(TokenConsumer consumer, boolean captureText) {
+            this.consumer = consumer;
+            this.token = captureText ? new StringBuilder(32) : null;
+        }
+
+        public void feed(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                feed(text.charAt(i));
+            }
+        }
+
+        public void feed(char[] buffer, int offset, int count) {
+            for (int i = offset; i < offset + count; i++) {
+                feed(buffer[i]);
+            }
+        }
+
+        public void feed(char c) {
+            if (isWhitespace(c)) {
+                endToken();
+                return;
+            }
+
+            char lower = c < 128
+                    ? (c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c)
+                    : Character.toLowerCase(c);
+            if ((lower >= 'a' && lower <= 'z') || (lower >= '0' && lower <= '9')) {
+                hash ^= lower;
+                hash *= FNV_PRIME;
+                length++;
+                if (token != null) {
+                    token.append(lower);
+                }
+            }
+            // any other character is dropped without ending the token
+        }
+
+        /**
+         * Flush the last pending token
+         */
+        public void finish() {
+            endToken();
+        }
+
+        private void endToken() {
+            if (length > 0) {
+                consumer.accept(hash, token != null ? token : "");
+            }
+            hash = FNV_OFFSET_BASIS;
+            length = 0;
+            if (token != null) {
+                token.setLength(0);
+            }
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+    }
+
+    /**
+     * Start an incremental session; {@code captureText} is only needed by
+     * consumers that read the token characters rather than just the hash
+     */
+    public Session session(TokenConsumer consumer, boolean captureText) {
+        return new Session(consumer, captureText);
+    }
+
+    public void tokenize(CharSequence text, TokenConsumer consumer) {
+        Session session = new Session(consumer, true);
+        session.feed(text);
+        session.finish();
+    }
+
+    /**
+     * Hash every normalized token of a text, in order
+     */
+    public long[] hashTokens(CharSequence text) {
+        TokenHashBuffer buffer = new TokenHashBuffer(Math.max(16, text.length() / 6));
+        Session session = new Session(buffer, false);
+        session.feed(text);
+        session.finish();
+        return buffer.toArray();
+    }
+
+    /**
+     * Normalized tokens of a text, in order
+     */
+    public List<String> tokens(CharSequence text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, (hash, token) -> tokens.add(token.toString()));
+        return tokens;
+    }
+
+    /**
+     * Growable primitive buffer of token hashes
+     */
+    public static class TokenHashBuffer implements TokenConsumer {
+        private long[] hashes;
+        private int size;
+
+        public TokenHashBuffer(int initialCapacity) {
+            this.hashes = new long[Math.max(1, initialCapacity)];
+        }
+
+        @Override
+        public void accept(long hash, CharSequence token) {
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            hashes[size++] = hash;
+        }
+
+        public long[] toArray() {
+            return Arrays.copyOf(hashes, size);
+        }
+    }
+}
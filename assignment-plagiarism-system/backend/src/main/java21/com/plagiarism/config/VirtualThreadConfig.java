@@ -0,0 +1,34 @@
+package com.plagiarism.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the I/O-bound work on virtual threads: every Tomcat request gets its own virtual
+ * thread instead of a slot in the bounded worker pool, and the text extraction stage
+ * takes its workers from {@link #ioThreadFactory()}. Plagiarism checks and the matrix
+ * stay on their bounded platform pools, since similarity scoring is CPU-bound.
+ * Only compiled by the {@code java21} build profile.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean
+    public ThreadFactory ioThreadFactory() {
+        return Thread.ofVirtual().name("io-virtual-", 1).factory();
+    }
+}
@@ -0,0 +1,134 @@
+package com.plagiarism.repository;
+
+import com.plagiarism.dto.PlagiarismResultDTO;
+import com.plagiarism.dto.SubmissionDTO;
+import com.plagiarism.entity.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The listing endpoints must cost one statement per page, however many rows the page
+ * holds. Counts the statements Hibernate prepares for each listing query.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:listing;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ListingQueryCountTest {
+
+    private static final int SUBMISSIONS = 5;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SubmissionRepository submissionRepository;
+
+    @Autowired
+    private PlagiarismResultRepository plagiarismResultRepository;
+
+    private Long assignmentId;
+    private Long submissionId;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        User teacher = entityManager.merge(user("teacher@example.com", UserRole.TEACHER));
+        Assignment assignment = entityManager.merge(Assignment.builder()
+                .title("Essay")
+                .teacher(teacher)
+                .dueDate(LocalDateTime.now().plusDays(7))
+                .maxScore(100)
+                .build());
+        for (int i = 0; i < SUBMISSIONS; i++) {
+            User student = entityManager.merge(user("student" + i + "@example.com", UserRole.STUDENT));
+            Submission submission = entityManager.merge(Submission.builder()
+                    .assignment(assignment)
+                    .student(student)
+                    .fileName("essay" + i + ".txt")
+                    .status(SubmissionStatus.PLAGIARISM_CHECK_COMPLETE)
+                    .build());
+            entityManager.persist(PlagiarismResult.builder()
+                    .submission(submission)
+                    .similarityScore(10.0 * i)
+                    .totalComparisons(SUBMISSIONS - 1)
+                    .detailedReport("report " + i)
+                    .build());
+            submissionId = submission.getId();
+        }
+        assignmentId = assignment.getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void listsSubmissionsInOneStatement() {
+        List<SubmissionDTO> page = submissionRepository.findDTOsByAssignmentId(
+                assignmentId, 0L, PageRequest.of(0, 50));
+
+        assertEquals(SUBMISSIONS, page.size());
+        assertNotNull(page.get(0).getStudentName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void listsResultsInOneStatement() {
+        List<PlagiarismResultDTO> page = plagiarismResultRepository.findReportPage(
+                assignmentId, 0.0, null, null, PageRequest.of(0, 50));
+
+        assertEquals(SUBMISSIONS, page.size());
+        assertEquals(40.0, page.get(0).getSimilarityScore());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void detachedSubmissionPrintsWithoutLoadingAssociations() {
+        Submission submission = submissionRepository.findById(submissionId).orElseThrow();
+        entityManager.clear();
+
+        assertFalse(Hibernate.isInitialized(submission.getAssignment()));
+        assertFalse(Hibernate.isInitialized(submission.getStudent()));
+        assertDoesNotThrow(submission::toString);
+        assertDoesNotThrow(submission::hashCode);
+        assertDoesNotThrow(() -> submission.getPlagiarismResult().toString());
+    }
+
+    private static User user(String email, UserRole role) {
+        return User.builder()
+                .email(email)
+                .password("secret")
+                .fullName(email)
+                .role(role)
+                .enabled(true)
+                .build();
+    }
+}
@@ -0,0 +1,136 @@
+package com.plagiarism.service;
+
+import com.plagiarism.entity.*;
+import com.plagiarism.repository.AssignmentRepository;
+import com.plagiarism.repository.SubmissionFingerprintRepository;
+import com.plagiarism.repository.SubmissionRepository;
+import com.plagiarism.repository.UserRepository;
+import com.plagiarism.util.CorpusIndex;
+import com.plagiarism.util.MinHashLshIndex;
+import com.plagiarism.util.NGramIndex;
+import com.plagiarism.util.PlagiarismDetectionEngine;
+import com.plagiarism.util.TextFingerprint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The in-memory candidate indexes must only change with the database: a replacement
+ * whose import rolls back leaves the replaced submission a candidate.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rollback;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({FingerprintService.class, SubmissionTextService.class, PlagiarismDetectionEngine.class,
+        NGramIndex.class, MinHashLshIndex.class, CorpusIndex.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FingerprintIndexRollbackTest {
+
+    private static final String TEXT = "The mitochondria is the powerhouse of the cell and produces most of its energy";
+
+    @Autowired
+    private FingerprintService fingerprintService;
+
+    @Autowired
+    private PlagiarismDetectionEngine engine;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AssignmentRepository assignmentRepository;
+
+    @Autowired
+    private SubmissionRepository submissionRepository;
+
+    @Autowired
+    private SubmissionFingerprintRepository fingerprintRepository;
+
+    private Submission replaced;
+    private Submission peer;
+    private TextFingerprint peerFingerprint;
+
+    @BeforeEach
+    void setUp() {
+        User teacher = userRepository.save(user("teacher", UserRole.TEACHER));
+        Assignment assignment = assignmentRepository.save(Assignment.builder()
+                .title("Essay")
+                .teacher(teacher)
+                .dueDate(LocalDateTime.now().plusDays(7))
+                .maxScore(100)
+                .build());
+        replaced = submission(assignment, userRepository.save(user("first", UserRole.STUDENT)));
+        peer = submission(assignment, userRepository.save(user("second", UserRole.STUDENT)));
+
+        fingerprintService.saveFingerprint(replaced, engine.createFingerprint(TEXT));
+        peerFingerprint = fingerprintService.saveFingerprint(peer, engine.createFingerprint(TEXT + " too"));
+        assertTrue(fingerprintService.getCandidateFingerprints(peer, peerFingerprint).containsKey(replaced.getId()));
+    }
+
+    // Nothing runs in a test transaction here, so the rows are removed by hand
+    @AfterEach
+    void tearDown() {
+        fingerprintRepository.deleteAll();
+        submissionRepository.deleteAll();
+        assignmentRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void rolledBackDeletionKeepsTheSubmissionACandidate() {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            fingerprintService.deleteFingerprint(replaced);
+            throw new IllegalStateException("insert of the new submission failed");
+        }));
+
+        assertTrue(fingerprintService.getCandidateFingerprints(peer, peerFingerprint).containsKey(replaced.getId()));
+    }
+
+    @Test
+    void committedDeletionRemovesTheCandidate() {
+        transactionTemplate.executeWithoutResult(status -> fingerprintService.deleteFingerprint(replaced));
+
+        assertFalse(fingerprintService.getCandidateFingerprints(peer, peerFingerprint).containsKey(replaced.getId()));
+    }
+
+    private Submission submission(Assignment assignment, User student) {
+        return submissionRepository.save(Submission.builder()
+                .assignment(assignment)
+                .student(student)
+                .fileName(student.getFullName() + ".txt")
+                .status(SubmissionStatus.SUBMITTED)
+                .build());
+    }
+
+    private static User user(String name, UserRole role) {
+        return User.builder()
+                .email(name + "@example.com")
+                .password("secret")
+                .fullName(name)
+                .role(role)
+                .enabled(true)
+                .build();
+    }
+}
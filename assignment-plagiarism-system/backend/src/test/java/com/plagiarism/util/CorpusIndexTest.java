@@ -0,0 +1,110 @@
+package com.plagiarism.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * What a reopened index reports as indexed, which the corpus backfill diffs against,
+ * and what it still finds after documents were removed.
+ */
+class CorpusIndexTest {
+
+    private final PlagiarismDetectionEngine engine = new PlagiarismDetectionEngine();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenedIndexDoesNotContainDocumentsLostFromMemory() throws Exception {
+        CorpusIndex crashed = index();
+        crashed.open(HashSet::new);
+        crashed.add(5L, 1L, engine.createFingerprint("the first essay about the water cycle and rain"));
+        crashed.add(3L, 1L, engine.createFingerprint("the second essay about volcanoes and lava flows"));
+        awaitManifest();
+
+        // Fingerprinted after a higher id, then lost in a crash before the next flush
+        crashed.add(4L, 1L, engine.createFingerprint("the third essay about glaciers and the ice age"));
+        assertTrue(crashed.contains(4L));
+
+        CorpusIndex reopened = index();
+        reopened.open(HashSet::new);
+        try {
+            assertTrue(reopened.contains(3L));
+            assertTrue(reopened.contains(5L));
+            assertFalse(reopened.contains(4L));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void removedDocumentsStayHiddenAfterReopening() throws Exception {
+        TextFingerprint removed = engine.createFingerprint("the first essay about the water cycle and rain");
+        CorpusIndex index = index();
+        index.open(HashSet::new);
+        index.add(1L, 1L, removed);
+        index.add(2L, 1L, engine.createFingerprint("the second essay about the water cycle and snow"));
+        awaitManifest();
+        index.remove(1L);
+        assertEquals(List.of(2L), candidateIds(index, removed));
+        index.close();
+
+        CorpusIndex reopened = index();
+        reopened.open(HashSet::new);
+        try {
+            assertEquals(List.of(2L), candidateIds(reopened, removed));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void removedDocumentsAreHiddenWhileBeingFlushed() throws Exception {
+        TextFingerprint removed = engine.createFingerprint("the first essay about the water cycle and rain");
+        CorpusIndex index = index();
+        index.open(HashSet::new);
+        try {
+            // The second add starts a flush; the removal lands before, during or after it
+            index.add(1L, 1L, removed);
+            index.add(2L, 1L, engine.createFingerprint("the second essay about the water cycle and snow"));
+            index.remove(1L);
+            assertEquals(List.of(2L), candidateIds(index, removed));
+
+            awaitManifest();
+            assertEquals(List.of(2L), candidateIds(index, removed));
+        } finally {
+            index.close();
+        }
+    }
+
+    private List<Long> candidateIds(CorpusIndex index, TextFingerprint fingerprint) {
+        return index.findCandidates(fingerprint.getNGramHashes(), 1, assignmentId -> true).stream()
+                .map(CorpusIndex.Candidate::submissionId)
+                .toList();
+    }
+
+    private CorpusIndex index() {
+        CorpusIndex index = new CorpusIndex(engine);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "directory", directory.toString());
+        ReflectionTestUtils.setField(index, "flushDocuments", 2);
+        return index;
+    }
+
+    private void awaitManifest() throws IOException, InterruptedException {
+        Path manifest = directory.resolve("MANIFEST");
+        for (int i = 0; i < 100 && !(Files.exists(manifest) && Files.readString(manifest).contains(".pcs")); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(Files.exists(manifest), "segment was not flushed");
+    }
+}
@@ -0,0 +1,135 @@
+package com.plagiarism.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips through the mapped segment format: write, reopen, look up and merge.
+ */
+class CorpusSegmentTest {
+
+    private static final String[] TEXTS = {
+            "The mitochondria is the powerhouse of the cell and produces most of its energy",
+            "Most of the energy of the cell is produced by the mitochondria, its powerhouse",
+            "Photosynthesis turns light into chemical energy stored in glucose molecules",
+    };
+
+    private final PlagiarismDetectionEngine engine = new PlagiarismDetectionEngine();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenedSegmentReturnsWhatWasWritten() throws IOException {
+        List<TextFingerprint> fingerprints = fingerprints();
+        long[] submissionIds = {30, 10, 20};
+        long[] assignmentIds = {3, 1, 2};
+
+        try (CorpusSegment segment = write("segment-1.pcs", submissionIds, assignmentIds, fingerprints)) {
+            assertEquals(TextFingerprint.VERSION, segment.getFingerprintVersion());
+            assertEquals(3, segment.getDocumentCount());
+            for (int ordinal = 0; ordinal < 3; ordinal++) {
+                assertEquals(submissionIds[ordinal], segment.getSubmissionId(ordinal));
+                assertEquals(assignmentIds[ordinal], segment.getAssignmentId(ordinal));
+                assertTrue(segment.containsSubmission(submissionIds[ordinal]));
+                assertMappedEquals(fingerprints.get(ordinal), segment.getFingerprint(ordinal));
+            }
+            assertFalse(segment.containsSubmission(15));
+            assertFalse(segment.containsSubmission(40));
+
+            long[] query = fingerprints.get(0).getNGramHashes();
+            int[] shared = segment.countShared(query);
+            for (int ordinal = 0; ordinal < 3; ordinal++) {
+                assertEquals(intersection(query, fingerprints.get(ordinal).getNGramHashes()), shared[ordinal]);
+            }
+            assertEquals(engine.calculateSimilarity(fingerprints.get(0), fingerprints.get(1)),
+                    engine.calculateSimilarity(fingerprints.get(0), segment.getFingerprint(1)), 1e-9);
+        }
+    }
+
+    @Test
+    void mergeDropsDeletedDocumentsAndRenumbersTheRest() throws IOException {
+        List<TextFingerprint> fingerprints = fingerprints();
+        try (CorpusSegment first = write("segment-1.pcs", new long[]{1, 2}, new long[]{1, 1},
+                fingerprints.subList(0, 2));
+             CorpusSegment second = write("segment-2.pcs", new long[]{3}, new long[]{2},
+                     fingerprints.subList(2, 3))) {
+
+            // Submission 2 was deleted: the survivors become ordinals 0 and 1
+            CorpusSegment[] sourceSegments = {first, second};
+            int[] sourceOrdinals = {0, 0};
+            Path file = directory.resolve("segment-3.pcs");
+            CorpusSegmentWriter.write(file, TextFingerprint.VERSION, new long[]{1, 3}, new long[]{1, 2},
+                    List.of(CorpusSegmentWriter.segment(first, new int[]{0, -1}),
+                            CorpusSegmentWriter.segment(second, new int[]{1})),
+                    (ordinal, out) -> sourceSegments[ordinal].copyFingerprint(sourceOrdinals[ordinal], out));
+
+            try (CorpusSegment merged = CorpusSegment.open(file)) {
+                assertEquals(2, merged.getDocumentCount());
+                assertEquals(1, merged.getSubmissionId(0));
+                assertEquals(3, merged.getSubmissionId(1));
+                assertEquals(2, merged.getAssignmentId(1));
+                assertFalse(merged.containsSubmission(2));
+                assertMappedEquals(fingerprints.get(0), merged.getFingerprint(0));
+                assertMappedEquals(fingerprints.get(2), merged.getFingerprint(1));
+
+                // The postings of the dropped document are gone, those of the others renumbered
+                long[] query = fingerprints.get(1).getNGramHashes();
+                int[] shared = merged.countShared(query);
+                assertEquals(intersection(query, fingerprints.get(0).getNGramHashes()), shared[0]);
+                assertEquals(intersection(query, fingerprints.get(2).getNGramHashes()), shared[1]);
+                assertEquals(fingerprints.get(2).getNGramHashes().length,
+                        merged.countShared(fingerprints.get(2).getNGramHashes())[1]);
+            }
+        }
+    }
+
+    @Test
+    void rejectsFilesOfAnotherFormat() throws IOException {
+        Path file = directory.resolve("segment-1.pcs");
+        Files.write(file, new byte[CorpusSegment.HEADER_BYTES]);
+        assertThrows(IOException.class, () -> CorpusSegment.open(file));
+    }
+
+    private CorpusSegment write(String name, long[] submissionIds, long[] assignmentIds,
+                                List<TextFingerprint> fingerprints) throws IOException {
+        List<CorpusSegmentWriter.TermSource> sources = new ArrayList<>();
+        for (int i = 0; i < fingerprints.size(); i++) {
+            sources.add(CorpusSegmentWriter.document(i, fingerprints.get(i).getNGramHashes()));
+        }
+        Path file = directory.resolve(name);
+        CorpusSegmentWriter.write(file, TextFingerprint.VERSION, submissionIds, assignmentIds, sources,
+                (ordinal, out) -> CorpusSegmentWriter.writeFingerprint(fingerprints.get(ordinal), out));
+        return CorpusSegment.open(file);
+    }
+
+    private List<TextFingerprint> fingerprints() {
+        return Arrays.stream(TEXTS).map(engine::createFingerprint).toList();
+    }
+
+    private static void assertMappedEquals(TextFingerprint expected, MappedFingerprint actual) {
+        assertEquals(expected.getNorm(), actual.getNorm());
+        assertEquals(expected.getNGramHashes().length, actual.getNGramCount());
+        for (int i = 0; i < actual.getNGramCount(); i++) {
+            assertEquals(expected.getNGramHashes()[i], actual.getNGramHash(i));
+        }
+        assertEquals(expected.getTermHashes().length, actual.getTermCount());
+        for (int i = 0; i < actual.getTermCount(); i++) {
+            assertEquals(expected.getTermHashes()[i], actual.getTermHash(i));
+            assertEquals(expected.getTermCounts()[i], actual.getTermFrequency(i));
+        }
+    }
+
+    private static int intersection(long[] sortedA, long[] sortedB) {
+        return (int) Arrays.stream(sortedA).filter(hash -> Arrays.binarySearch(sortedB, hash) >= 0).count();
+    }
+}
@@ -0,0 +1,66 @@
+package com.plagiarism.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pins the tiles found for known texts, longest first and never overlapping.
+ */
+class GreedyStringTilingTest {
+
+    private final TextTokenizer tokenizer = new TextTokenizer();
+
+    @Test
+    void tilesSharedRunsLongestFirst() {
+        long[] text = tokenizer.hashTokens(
+                "the quick brown fox jumps over the lazy dog while the cat sleeps on the warm mat");
+        long[] source = tokenizer.hashTokens(
+                "while the cat sleeps on the mat and the quick brown fox jumps over the lazy dog");
+
+        List<int[]> tiles = GreedyStringTiling.tile(text, new boolean[text.length], source, 3);
+
+        assertTiles(List.of(new int[]{0, 8, 9}, new int[]{9, 0, 6}), tiles);
+    }
+
+    @Test
+    void marksKeepTilesOfSeveralSourcesDisjoint() {
+        long[] text = tokenizer.hashTokens("one two three four five six seven eight nine ten");
+        long[] first = tokenizer.hashTokens("zero one two three four five");
+        long[] second = tokenizer.hashTokens("three four five six seven eight");
+        boolean[] marked = new boolean[text.length];
+
+        assertTiles(List.of(new int[]{0, 1, 5}), GreedyStringTiling.tile(text, marked, first, 3));
+        // "three four five" is covered by the first source already
+        assertTiles(List.of(new int[]{5, 3, 3}), GreedyStringTiling.tile(text, marked, second, 3));
+        assertArrayEquals(new boolean[]{true, true, true, true, true, true, true, true, false, false}, marked);
+    }
+
+    @Test
+    void eachSourceTokenIsTiledOnce() {
+        long[] text = tokenizer.hashTokens("red green blue red green blue red green blue");
+        long[] source = tokenizer.hashTokens("red green blue");
+
+        assertTiles(List.of(new int[]{0, 0, 3}),
+                GreedyStringTiling.tile(text, new boolean[text.length], source, 3));
+    }
+
+    @Test
+    void ignoresRunsShorterThanTheMinimum() {
+        long[] text = tokenizer.hashTokens("alpha beta gamma delta");
+        long[] source = tokenizer.hashTokens("gamma delta alpha beta");
+
+        assertTrue(GreedyStringTiling.tile(text, new boolean[text.length], source, 3).isEmpty());
+        assertTiles(List.of(new int[]{0, 2, 2}, new int[]{2, 0, 2}),
+                GreedyStringTiling.tile(text, new boolean[text.length], source, 2));
+    }
+
+    private static void assertTiles(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size(), "number of tiles");
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), "tile " + i);
+        }
+    }
+}
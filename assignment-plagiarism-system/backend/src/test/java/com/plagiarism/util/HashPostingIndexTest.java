@@ -0,0 +1,86 @@
+package com.plagiarism.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The primitive posting table against a plain map of sets, and changes that arrive
+ * while an assignment's index is being loaded.
+ */
+class HashPostingIndexTest {
+
+    private static final Long ASSIGNMENT = 1L;
+
+    @Test
+    void findsTheSameCandidatesAsAMapOfSets() {
+        NGramIndex index = new NGramIndex();
+        index.ensureLoaded(ASSIGNMENT, Map::of);
+        Map<Long, long[]> documents = new HashMap<>();
+        Random random = new Random(7);
+
+        // Few distinct keys, so postings are shared, grow and shrink, and the table resizes
+        for (int step = 0; step < 3000; step++) {
+            long submissionId = random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                index.remove(ASSIGNMENT, submissionId);
+                documents.remove(submissionId);
+            } else {
+                long[] keys = random.longs(1 + random.nextInt(40), 0, 5000).toArray();
+                index.add(ASSIGNMENT, submissionId, keys);
+                documents.put(submissionId, keys);
+            }
+
+            if (step % 100 == 0) {
+                long[] query = random.longs(60, 0, 5000).toArray();
+                assertEquals(expectedCandidates(documents, query, 2), index.findCandidates(ASSIGNMENT, query, 2));
+            }
+        }
+    }
+
+    @Test
+    void changesMadeDuringTheLoadAreApplied() {
+        NGramIndex index = new NGramIndex();
+        long[] keys = {1, 2, 3};
+
+        index.ensureLoaded(ASSIGNMENT, () -> {
+            // The stored keys were read before submission 5 was replaced by submission 6
+            index.remove(ASSIGNMENT, 5L);
+            index.add(ASSIGNMENT, 6L, keys);
+            return Map.of(4L, keys, 5L, keys);
+        });
+
+        assertEquals(Set.of(4L, 6L), index.findCandidates(ASSIGNMENT, keys, 1).keySet());
+    }
+
+    @Test
+    void failedLoadIsRetried() {
+        NGramIndex index = new NGramIndex();
+        long[] keys = {1, 2, 3};
+
+        assertThrows(IllegalStateException.class, () -> index.ensureLoaded(ASSIGNMENT, () -> {
+            throw new IllegalStateException("database unavailable");
+        }));
+        index.add(ASSIGNMENT, 5L, keys);
+        index.ensureLoaded(ASSIGNMENT, () -> Map.of(4L, keys));
+
+        assertEquals(Set.of(4L), index.findCandidates(ASSIGNMENT, keys, 1).keySet());
+    }
+
+    private static Map<Long, Integer> expectedCandidates(Map<Long, long[]> documents, long[] query, int minShared) {
+        Map<Long, Set<Long>> postings = new HashMap<>();
+        documents.forEach((submissionId, keys) -> {
+            for (long key : keys) {
+                postings.computeIfAbsent(key, k -> new HashSet<>()).add(submissionId);
+            }
+        });
+        Map<Long, Integer> counts = new HashMap<>();
+        for (long key : query) {
+            postings.getOrDefault(key, Set.of()).forEach(id -> counts.merge(id, 1, Integer::sum));
+        }
+        counts.values().removeIf(count -> count < minShared);
+        return counts;
+    }
+}
@@ -0,0 +1,95 @@
+package com.plagiarism.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The single-pass tokenizer must produce exactly the tokens of the regex pipeline it
+ * replaced, so fingerprints and highlights match what the old engine compared.
+ */
+class TextTokenizerTest {
+
+    private static final String[] TEXTS = {
+            "The mitochondria is the powerhouse of the cell.",
+            "  Don't   split\thyphenated-words; keep DIGITS 42 and 3.14!\r\n",
+            "Résumé — naïve café, İstanbul and ÅNGSTRÖM",
+            "... --- !!! ???",
+            "one\u000Btwo\fthree\n\nfour",
+            "",
+    };
+
+    private final TextTokenizer tokenizer = new TextTokenizer();
+    private final PlagiarismDetectionEngine engine = new PlagiarismDetectionEngine();
+
+    @Test
+    void matchesTheRegexPipelineOnEdgeCases() {
+        for (String text : TEXTS) {
+            assertEquivalent(text);
+        }
+    }
+
+    @Test
+    void matchesTheRegexPipelineOnRandomText() {
+        String alphabet = "abcXYZ019 \t\n\r.,;'-_éÉßİ  ";
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int length = random.nextInt(200); length > 0; length--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertEquivalent(text.toString());
+        }
+    }
+
+    private void assertEquivalent(String text) {
+        List<String> expected = legacyTokens(text);
+        String message = "tokens of \"" + text + "\"";
+        assertEquals(expected, tokenizer.tokens(text), message);
+        assertArrayEquals(expected.stream().mapToLong(TextTokenizerTest::fnv1a).toArray(),
+                tokenizer.hashTokens(text), message);
+
+        // Fed in chunks, as text extraction streams it
+        TextTokenizer.TokenHashBuffer chunked = new TextTokenizer.TokenHashBuffer(16);
+        TextTokenizer.Session session = tokenizer.session(chunked, false);
+        for (int start = 0; start < text.length(); start += 7) {
+            session.feed(text.substring(start, Math.min(text.length(), start + 7)));
+        }
+        session.finish();
+        assertArrayEquals(tokenizer.hashTokens(text), chunked.toArray(), message);
+
+        TextFingerprint fingerprint = engine.createFingerprint(text);
+        assertEquals(legacyNGrams(expected, 3).size(), fingerprint.getNGramHashes().length, message);
+        assertEquals(new HashSet<>(expected).size(), fingerprint.getTermHashes().length, message);
+    }
+
+    // normalizeText followed by split, as the engine did before the tokenizer
+    private static List<String> legacyTokens(String text) {
+        String normalized = text
+                .toLowerCase()
+                .replaceAll("[^a-z0-9\\s]", "")
+                .replaceAll("\\s+", " ")
+                .trim();
+        return normalized.isEmpty() ? List.of() : List.of(normalized.split("\\s+"));
+    }
+
+    // generateNGrams over the split words
+    private static Set<String> legacyNGrams(List<String> words, int n) {
+        Set<String> nGrams = new HashSet<>();
+        for (int i = 0; i <= words.size() - n; i++) {
+            nGrams.add(String.join(" ", words.subList(i, i + n)));
+        }
+        return nGrams;
+    }
+
+    private static long fnv1a(String token) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < token.length(); i++) {
+            hash ^= token.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -64,7 +64,19 @@ const TeacherDashboard = () => {
 
   const checkPlagiarism = async (submissionId) => {
     try {
-      await submissionService.checkPlagiarism(submissionId);
+      const res = await submissionService.checkPlagiarism(submissionId);
+      let job = res.data;
+      loadSubmissions(selectedAssignment);
+
+      // The check runs in the background; poll until it finishes
+      while (job.status === 'QUEUED' || job.status === 'RUNNING') {
+        await new Promise((resolve) => setTimeout(resolve, 1000));
+        job = (await submissionService.getPlagiarismJob(job.jobId)).data;
+      }
+
+      if (job.status === 'FAILED') {
+        setError(`Plagiarism check failed: ${job.error}`);
+      }
       loadSubmissions(selectedAssignment);
     } catch (err) {
       setError('Failed to check plagiarism');
@@ -94,6 +94,9 @@ export const submissionService = {
     });
   },
 
+  getPlagiarismJob: (jobId) =>
+    axios.get(`${API_BASE_URL}/submissions/plagiarism-jobs/${jobId}`),
+
   getPlagiarismResult: (submissionId) =>
     axios.get(`${API_BASE_URL}/submissions/${submissionId}/plagiarism`),
 